@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Rate lookups: direct quote, identity, cached cross rate, and an unconnected pair.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankBenchmark {
+    Bank bank;
+    int usd;
+    int chf;
+    int eur;
+    int krw;
+
+    @Setup
+    public void setUp() {
+        bank = new Bank();
+        bank.addRate("CHF", "USD", 2);
+        bank.addRate("EUR", "USD", new BigDecimal("0.92"));
+        usd = Currencies.USD;
+        chf = Currencies.CHF;
+        eur = Currencies.register("EUR");
+        krw = Currencies.register("KRW");
+    }
+
+    @Benchmark
+    public long directHit() {
+        return bank.scaledRate(chf, usd);
+    }
+
+    @Benchmark
+    public long identity() {
+        return bank.scaledRate(usd, usd);
+    }
+
+    @Benchmark
+    public long crossRate() {
+        return bank.scaledRate(eur, chf);
+    }
+
+    @Benchmark
+    public BigDecimal rateByCode() {
+        return bank.rate("CHF", "USD");
+    }
+
+    @Benchmark
+    public Object miss() {
+        try {
+            return bank.scaledRate(usd, krw);
+        } catch (IllegalArgumentException missing) {
+            return missing;
+        }
+    }
+}
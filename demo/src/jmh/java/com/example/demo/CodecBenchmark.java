@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Binary codec against the JSON wire shape for the same portfolio expression.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+    private static final String[] CODES = {"USD", "CHF", "EUR", "GBP", "JPY"};
+
+    @Param({"10", "10000"})
+    int terms;
+
+    ObjectMapper json = new ObjectMapper();
+    Expression portfolio;
+    byte[] binary;
+    byte[] text;
+
+    @Setup
+    public void setUp() throws IOException {
+        Expression e = new Money(1, Currencies.USD);
+        for (int i = 1; i < terms; i++) {
+            Expression term = new Money(i * 137L, Currencies.register(CODES[i % CODES.length]));
+            e = e.plus(i % 7 == 0 ? term.plus(term).times(3) : term);
+        }
+        portfolio = e;
+        binary = ExpressionCodec.encode(portfolio);
+        text = encodeJson();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ExpressionCodec.encode(portfolio);
+    }
+
+    @Benchmark
+    public Expression decodeBinary() {
+        return ExpressionCodec.decode(ByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = json.createGenerator(out)) {
+            ExpressionJson.write(portfolio, generator);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Expression decodeJson() throws IOException {
+        return ExpressionJson.read(json.readTree(text));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    Money five = Money.dollar(5);
+    Money otherFive = Money.dollar(5);
+    Money tenFrancs = Money.franc(10);
+    int multiplier = 3;
+
+    @Benchmark
+    public Expression times() {
+        return five.times(multiplier);
+    }
+
+    @Benchmark
+    public Expression plus() {
+        return five.plus(tenFrancs);
+    }
+
+    @Benchmark
+    public boolean equalsSame() {
+        return five.equals(otherFive);
+    }
+
+    @Benchmark
+    public boolean equalsDifferentCurrency() {
+        return five.equals(tenFrancs);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// A mixed-currency portfolio reduced to USD: built with plus and reduced, the same positions
+// through the columnar batch API, and as a parallel stream of Money.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PortfolioBenchmark {
+    private static final String[] CODES = {"USD", "CHF", "EUR", "GBP", "JPY", "KRW"};
+
+    @Param({"1000", "1000000"})
+    int positions;
+
+    Bank bank;
+    long[] amounts;
+    int[] currencies;
+    Money[] money;
+
+    @Setup
+    public void setUp() {
+        bank = new Bank();
+        bank.addRate("CHF", "USD", new BigDecimal("0.88"));
+        bank.addRate("EUR", "USD", new BigDecimal("0.92"));
+        bank.addRate("GBP", "USD", new BigDecimal("0.79"));
+        bank.addRate("JPY", "USD", 150);
+        bank.addRate("KRW", "USD", 1350);
+        SplittableRandom random = new SplittableRandom(42);
+        amounts = new long[positions];
+        currencies = new int[positions];
+        money = new Money[positions];
+        for (int i = 0; i < positions; i++) {
+            amounts[i] = random.nextLong(1, 1_000_000);
+            currencies[i] = Currencies.register(CODES[random.nextInt(CODES.length)]);
+            money[i] = Money.valueOf(amounts[i], currencies[i]);
+        }
+    }
+
+    @Benchmark
+    public Money plusThenReduce() {
+        Expression portfolio = new Money(amounts[0], currencies[0]);
+        for (int i = 1; i < positions; i++) {
+            portfolio = portfolio.plus(new Money(amounts[i], currencies[i]));
+        }
+        return bank.reduce(portfolio, "USD");
+    }
+
+    @Benchmark
+    public Money parallelStream() {
+        return PortfolioAggregator.aggregate(Arrays.stream(money).parallel(), bank, "USD");
+    }
+
+    @Benchmark
+    public Money batch() {
+        return bank.reduce(amounts, currencies, "USD").total();
+    }
+}
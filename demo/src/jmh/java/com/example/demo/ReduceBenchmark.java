@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Sum.reduce on a shallow and on a very deep left-leaning tree. "cold" builds a fresh tree per
+// invocation so the compile step is measured; "warm" reuses the tree and its cached plan.
+// The cached pair goes through a ReductionCache: "hit" asks at one rate version, "miss" moves
+// the rates before every invocation so each call takes the uncached path and stores its result.
+// Per-invocation work lives in its own states, so only the benchmarks using it pay for it (the
+// gc profiler counts setup allocations too).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReduceBenchmark {
+    @Param({"2", "1000", "100000"})
+    int depth;
+
+    Bank bank;
+    Sum warm;
+    ReductionCache cache;
+
+    @Setup(Level.Trial)
+    public void setUpBank() {
+        bank = new Bank();
+        bank.addRate("CHF", "USD", 2);
+        warm = build(depth);
+        cache = new ReductionCache(bank, 1_000, Duration.ofMinutes(1));
+    }
+
+    @State(Scope.Thread)
+    public static class Cold {
+        @Param({"2", "1000", "100000"})
+        int depth;
+
+        Sum tree;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            tree = build(depth);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MovingRates {
+        @Param({"2", "1000", "100000"})
+        int depth;
+
+        Bank bank;
+        Sum tree;
+        ReductionCache cache;
+        int tick;
+
+        @Setup(Level.Trial)
+        public void setUpBank() {
+            bank = new Bank();
+            bank.addRate("CHF", "USD", 2);
+            tree = build(depth);
+            cache = new ReductionCache(bank, 1_000, Duration.ofMinutes(1));
+        }
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            bank.addRate("CHF", "USD", ++tick % 2 == 0 ? 2 : 3);
+        }
+    }
+
+    @Benchmark
+    public Money reduceWarm() {
+        return bank.reduce(warm, "USD");
+    }
+
+    @Benchmark
+    public Money reduceCold(Cold cold) {
+        return bank.reduce(cold.tree, "USD");
+    }
+
+    @Benchmark
+    public Money reduceCachedHit() {
+        return cache.reduce(warm, "USD");
+    }
+
+    @Benchmark
+    public Money reduceCachedMiss(MovingRates moving) {
+        return moving.cache.reduce(moving.tree, "USD");
+    }
+
+    private static Sum build(int depth) {
+        Sum sum = new Sum(Money.dollar(1), Money.franc(2));
+        for (int i = 1; i < depth; i++) {
+            sum = new Sum(sum, i % 2 == 0 ? Money.dollar(1) : Money.franc(2));
+        }
+        return sum;
+    }
+}
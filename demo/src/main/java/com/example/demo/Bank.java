@@ -1,21 +1,131 @@
 package com.example.demo;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Bank {
-    Map<Pair, Integer> rates = new HashMap<>();
+    private final Object writeLock = new Object();
+    private final boolean snapshot;
+    private final RoundingMode roundingMode;
+    private final RateHistory history;
+    private final List<RateListener> listeners;
+    private volatile RateTable rates;
+
+    public Bank() {
+        this(RoundingMode.HALF_EVEN);
+    }
+
+    public Bank(RoundingMode roundingMode) {
+        this(RateTable.EMPTY, new RateHistory(), new CopyOnWriteArrayList<>(), roundingMode, false);
+    }
+
+    private Bank(RateTable rates, RateHistory history, List<RateListener> listeners, RoundingMode roundingMode, boolean snapshot) {
+        this.rates = rates;
+        this.history = history;
+        this.listeners = listeners;
+        this.roundingMode = roundingMode;
+        this.snapshot = snapshot;
+    }
 
     Money reduce(Expression source, String to) {
-        return source.reduce(this, to);
+        return source.reduce(snapshot(), to);
+    }
+
+    // Every rate of the reduction is the historical one in force at that instant.
+    Money reduce(Expression source, String to, Instant at) {
+        return source.reduce(asOf(at), to);
+    }
+
+    // Read-only view over the recorded history at one instant, cross rates included.
+    Bank asOf(Instant at) {
+        return new Bank(history.tableAt(at.toEpochMilli()), history, List.of(), roundingMode, true);
+    }
+
+    // Columnar form for large position sets: amounts[i] is in minor units of currencies[i].
+    BatchReduction reduce(long[] amounts, int[] currencies, String to) {
+        return BatchReduction.reduce(amounts, currencies, snapshot(), to);
+    }
+
+    // Read-only view pinned to the current rates; one reduce sees one rate set.
+    Bank snapshot() {
+        return snapshot ? this : new Bank(rates, history, List.of(), roundingMode, true);
     }
 
     void addRate(String from, String to, int rate) {
-        rates.put(new Pair(from, to), rate);
+        addRate(from, to, BigDecimal.valueOf(rate));
+    }
+
+    // Amounts in "from" are divided by rate to get "to", e.g. addRate("CHF", "USD", 2).
+    void addRate(String from, String to, BigDecimal rate) {
+        if (snapshot) throw new UnsupportedOperationException("rate snapshot is read-only");
+        long scaled = FixedPoint.toScaledRate(rate);
+        int fromId = Currencies.register(from);
+        int toId = Currencies.register(to);
+        synchronized (writeLock) {
+            rates = rates.with(fromId, toId, scaled);
+            notifyListeners(new int[] {fromId}, new int[] {toId});
+        }
+    }
+
+    // Records a historical quote for as-of reductions; the live rate is left alone.
+    void addRate(String from, String to, BigDecimal rate, Instant at) {
+        if (snapshot) throw new UnsupportedOperationException("rate snapshot is read-only");
+        history.add(Currencies.register(from), Currencies.register(to), at.toEpochMilli(), FixedPoint.toScaledRate(rate));
+    }
+
+    // Applies all quotes as one rate version; scaledRates use FixedPoint.RATE_SCALE.
+    void addRates(int[] from, int[] to, long[] scaledRates) {
+        if (snapshot) throw new UnsupportedOperationException("rate snapshot is read-only");
+        synchronized (writeLock) {
+            rates = rates.withAll(from, to, scaledRates);
+            notifyListeners(from, to);
+        }
+    }
+
+    // Called after every rate change, in publication order, with a snapshot of the new rates.
+    void subscribe(RateListener listener) {
+        if (snapshot) throw new UnsupportedOperationException("rate snapshot is read-only");
+        listeners.add(listener);
+    }
+
+    BigDecimal rate(String from, String to) {
+        return FixedPoint.fromScaledRate(scaledRate(Currencies.find(from), Currencies.find(to)));
+    }
+
+    long scaledRate(int from, int to) {
+        if (from == to) return FixedPoint.RATE_SCALE;
+        long rate = rates.resolve(from, to);
+        if (rate == 0) {
+            throw new IllegalArgumentException("no rate from " + Currencies.code(from) + " to " + Currencies.code(to));
+        }
+        return rate;
+    }
+
+    // Currencies whose rates a change to the quotes between from[i] and to[i] can have moved;
+    // indexed by currency id, shorter than Currencies.count() when later ids have no quotes.
+    boolean[] connected(int[] from, int[] to) {
+        return rates.connected(from, to);
+    }
+
+    long convert(long amount, int from, int to) {
+        if (from == to) return amount;
+        return FixedPoint.convert(amount, Currencies.scale(from), Currencies.scale(to), scaledRate(from, to), roundingMode);
+    }
+
+    RoundingMode roundingMode() {
+        return roundingMode;
+    }
+
+    long version() {
+        return rates.version();
     }
 
-    int rate(String from, String to) {
-        if (from.equals(to)) return 1;
-        return rates.get(new Pair(from, to));
+    private void notifyListeners(int[] from, int[] to) {
+        if (listeners.isEmpty()) return;
+        Bank view = snapshot();
+        for (RateListener listener : listeners) listener.ratesChanged(view, from, to);
     }
 }
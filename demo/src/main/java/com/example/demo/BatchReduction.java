@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Result of reducing a column of positions (amounts[i] in currencies[i]) into one currency.
+// Positions are summed per source currency over fork-join chunks, then each currency's
+// subtotal is converted once.
+public final class BatchReduction {
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private final long[] subtotals;
+    private final long[] converted;
+    private final Money total;
+
+    private BatchReduction(long[] subtotals, long[] converted, Money total) {
+        this.subtotals = subtotals;
+        this.converted = converted;
+        this.total = total;
+    }
+
+    static BatchReduction reduce(long[] amounts, int[] currencies, Bank bank, String to) {
+        if (amounts.length != currencies.length) {
+            throw new IllegalArgumentException("amounts and currencies differ in length: " + amounts.length + " vs " + currencies.length);
+        }
+        int toId = Currencies.find(to);
+        // ids index the subtotal arrays, so a bad one must fail here rather than mid-sum
+        int count = Currencies.count();
+        for (int i = 0; i < currencies.length; i++) {
+            if (currencies[i] < 0 || currencies[i] >= count) {
+                throw new IllegalArgumentException("unknown currency id " + currencies[i] + " at position " + i);
+            }
+        }
+        long[] subtotals = amounts.length <= CHUNK_SIZE
+                ? sum(amounts, currencies, 0, amounts.length, count)
+                : ForkJoinPool.commonPool().invoke(new Chunk(amounts, currencies, 0, amounts.length, count));
+        long[] converted = new long[subtotals.length];
+        long total = 0;
+        for (int currency = 0; currency < subtotals.length; currency++) {
+            if (subtotals[currency] == 0) continue;
+            converted[currency] = bank.convert(subtotals[currency], currency, toId);
+            total = Math.addExact(total, converted[currency]);
+        }
+        return new BatchReduction(subtotals, converted, Money.valueOf(total, toId));
+    }
+
+    Money total() {
+        return total;
+    }
+
+    // Sum of the positions held in this currency, in its own minor units.
+    long subtotal(String currency) {
+        int id = Currencies.find(currency);
+        return id < subtotals.length ? subtotals[id] : 0;
+    }
+
+    // That subtotal converted into the target currency.
+    long converted(String currency) {
+        int id = Currencies.find(currency);
+        return id < converted.length ? converted[id] : 0;
+    }
+
+    private static long[] sum(long[] amounts, int[] currencies, int from, int to, int count) {
+        long[] sums = new long[count];
+        for (int i = from; i < to; i++) {
+            sums[currencies[i]] = Math.addExact(sums[currencies[i]], amounts[i]);
+        }
+        return sums;
+    }
+
+    private static final class Chunk extends RecursiveTask<long[]> {
+        private final long[] amounts;
+        private final int[] currencies;
+        private final int from;
+        private final int to;
+        private final int count;
+
+        Chunk(long[] amounts, int[] currencies, int from, int to, int count) {
+            this.amounts = amounts;
+            this.currencies = currencies;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= CHUNK_SIZE) return sum(amounts, currencies, from, to, count);
+            int mid = (from + to) >>> 1;
+            Chunk left = new Chunk(amounts, currencies, from, mid, count);
+            left.fork();
+            long[] right = new Chunk(amounts, currencies, mid, to, count).compute();
+            long[] sums = left.join();
+            for (int i = 0; i < right.length; i++) sums[i] = Math.addExact(sums[i], right[i]);
+            return sums;
+        }
+    }
+}
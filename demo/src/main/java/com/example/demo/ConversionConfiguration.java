@@ -0,0 +1,52 @@
+package com.example.demo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.io.IOException;
+import java.time.Duration;
+
+@Configuration(proxyBeanMethods = false)
+public class ConversionConfiguration {
+
+    // Request paths only accept currencies that are already registered, so the ones the service
+    // trades are registered up front.
+    @Bean
+    public Bank bank(@Value("${conversion.currencies:USD,EUR,CHF,GBP,JPY,KRW}") String[] currencies) {
+        for (String code : currencies) Currencies.register(code.trim());
+        return new Bank();
+    }
+
+    @Bean
+    public ReductionCache reductionCache(Bank bank,
+                                         @Value("${conversion.cache.size:10000}") int size,
+                                         @Value("${conversion.cache.ttl:PT1M}") Duration ttl) {
+        return new ReductionCache(bank, size, ttl);
+    }
+
+    // Eager even under lazy initialization: nothing else would ever ask for it.
+    // POST /rates is unauthenticated, so it stays off unless conversion.server.rate-writes is set.
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @Lazy(false)
+    @ConditionalOnProperty(name = "conversion.server.enabled", matchIfMissing = true)
+    public ConversionServer conversionServer(Bank bank, ReductionCache cache,
+                                             @Value("${conversion.server.port:8080}") int port,
+                                             @Value("${conversion.server.threads:0}") int threads,
+                                             @Value("${conversion.server.batch-streams:0}") int batchStreams,
+                                             @Value("${conversion.server.rate-writes:false}") boolean rateWrites) throws IOException {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        // by default half the workers, so streaming batches never starve single reductions
+        int streams = batchStreams > 0 ? Math.min(batchStreams, workers) : Math.max(1, workers / 2);
+        return new ConversionServer(bank, cache, port, workers, streams, rateWrites);
+    }
+
+    // Startup benchmark only; see StartupProbe.
+    @Bean
+    @ConditionalOnProperty(name = "conversion.startup-probe", havingValue = "true")
+    StartupProbe startupProbe() {
+        return new StartupProbe();
+    }
+}
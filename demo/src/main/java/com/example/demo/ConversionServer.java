@@ -0,0 +1,216 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// HTTP front for a shared Bank.
+//   POST /reduce?to=USD        one JSON expression in, one JSON money out
+//   POST /reduce/batch?to=USD  NDJSON expressions in, NDJSON results out, streamed line by line
+//   POST /rates                "FROM,TO,RATE" lines, applied as one rate version; only served when
+//                              rate writes are enabled, and bodies over MAX_RATES_BODY are a 413
+// Batch responses are chunked and each result is written as soon as its line is parsed, so a
+// batch of any size runs in constant memory. A batch holds its worker thread for as long as the
+// client streams, so at most batchStreams run at once and further ones get a 503 straight away;
+// the remaining workers stay free for single reductions. Reductions go through a ReductionCache,
+// so the same expression asked again at the same rate version is answered without reducing it.
+// Currency codes must already be known to the registry; an unknown one is a 400, never a new
+// registration.
+public class ConversionServer {
+    private static final String NDJSON = "application/x-ndjson";
+    static final int MAX_RATES_BODY = 64 * 1024;
+
+    private final Bank bank;
+    private final ReductionCache cache;
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Semaphore batchStreams;
+
+    public ConversionServer(Bank bank, ReductionCache cache, int port, int threads, int batchStreams,
+                            boolean rateWrites) throws IOException {
+        if (batchStreams < 1 || batchStreams > threads) {
+            throw new IllegalArgumentException("batchStreams must be between 1 and threads (" + threads + ")");
+        }
+        this.bank = bank;
+        this.cache = cache;
+        this.batchStreams = new Semaphore(batchStreams);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "conversion-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(workers);
+        server.createContext("/reduce", this::handle);
+        // answered here rather than left unmapped, which makes the server drop the connection
+        server.createContext("/rates", rateWrites ? this::rates : this::ratesDisabled);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                error(exchange, 405, "use POST");
+                return;
+            }
+            String to = query(exchange.getRequestURI(), "to");
+            if (to == null) {
+                error(exchange, 400, "missing query parameter 'to'");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/reduce")) {
+                single(exchange, to);
+            } else if (path.equals("/reduce/batch")) {
+                if (!batchStreams.tryAcquire()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    error(exchange, 503, "too many concurrent batch requests");
+                    return;
+                }
+                try {
+                    batch(exchange, to);
+                } finally {
+                    batchStreams.release();
+                }
+            } else {
+                error(exchange, 404, "no such endpoint " + path);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void rates(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                error(exchange, 405, "use POST");
+                return;
+            }
+            byte[] bytes = body.readNBytes(MAX_RATES_BODY + 1);
+            if (bytes.length > MAX_RATES_BODY) {
+                error(exchange, 413, "rate updates are limited to " + MAX_RATES_BODY + " bytes");
+                return;
+            }
+            String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\\R");
+            int[] from = new int[lines.length];
+            int[] to = new int[lines.length];
+            long[] rates = new long[lines.length];
+            int n = 0;
+            for (String line : lines) {
+                if (line.isBlank()) continue;
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    error(exchange, 400, "expected FROM,TO,RATE but got " + line);
+                    return;
+                }
+                from[n] = Currencies.find(fields[0].trim());
+                to[n] = Currencies.find(fields[1].trim());
+                rates[n++] = FixedPoint.toScaledRate(new BigDecimal(fields[2].trim()));
+            }
+            bank.addRates(Arrays.copyOf(from, n), Arrays.copyOf(to, n), Arrays.copyOf(rates, n));
+            exchange.sendResponseHeaders(204, -1);
+        } catch (IllegalArgumentException | ArithmeticException bad) {
+            error(exchange, 400, bad.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void ratesDisabled(HttpExchange exchange) throws IOException {
+        try {
+            error(exchange, 404, "rate writes are disabled");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void single(HttpExchange exchange, String to) throws IOException {
+        Money result;
+        try (InputStream body = exchange.getRequestBody()) {
+            result = cache.reduce(ExpressionJson.read(json.readTree(body)), to);
+        } catch (IllegalArgumentException | ArithmeticException | JsonProcessingException bad) {
+            error(exchange, 400, bad.getMessage());
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonGenerator out = json.createGenerator(exchange.getResponseBody())) {
+            ExpressionJson.write(result, out);
+        }
+    }
+
+    // One output line per input line; a bad line yields {"error": ...} and the stream goes on.
+    private void batch(HttpExchange exchange, String to) throws IOException {
+        Bank rates = bank.snapshot();
+        exchange.getResponseHeaders().set("Content-Type", NDJSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+             OutputStream raw = exchange.getResponseBody();
+             JsonGenerator out = json.createGenerator(raw)) {
+            out.setRootValueSeparator(null);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    ExpressionJson.write(cache.reduce(rates, ExpressionJson.read(json.readTree(line)), to), out);
+                } catch (IllegalArgumentException | ArithmeticException | JsonProcessingException bad) {
+                    out.writeStartObject();
+                    out.writeStringField("error", bad.getMessage());
+                    out.writeEndObject();
+                }
+                out.writeRaw('\n');
+                out.flush();
+            }
+        }
+    }
+
+    private void error(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = json.writeValueAsBytes(Map.of("error", String.valueOf(message)));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String query(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            int eq = part.indexOf('=');
+            if (eq > 0 && URLDecoder.decode(part.substring(0, eq), StandardCharsets.UTF_8).equals(name)) {
+                return URLDecoder.decode(part.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Rates derived from a RateTable by walking the currency graph: every quote is an edge usable in
+// both directions (the reverse one at 1/rate), and a missing pair takes the path with the fewest
+// hops, e.g. EUR -> USD -> CHF. Results are cached per table together with the path they used,
+// so a new table can keep every entry whose path does not touch the quote that changed.
+final class CrossRates {
+    private static final long NO_PATH = -1;
+
+    private final int size;
+    private final AtomicLongArray rates;
+    private final AtomicReferenceArray<int[]> paths;
+
+    CrossRates(int size) {
+        this.size = size;
+        this.rates = new AtomicLongArray(size * size);
+        this.paths = new AtomicReferenceArray<>(size * size);
+    }
+
+    // Cache for the table that differs from this one's only in the quotes between a[i] and b[i].
+    // A brand-new edge can shorten any path, so then nothing is kept.
+    CrossRates after(int[] a, int[] b, boolean newEdge, int newSize) {
+        CrossRates next = new CrossRates(newSize);
+        if (newEdge || newSize != size) return next;
+        for (int i = 0; i < rates.length(); i++) {
+            long rate = rates.get(i);
+            if (rate == 0) continue;
+            int[] path = paths.get(i);
+            if (path != null && usesAny(path, a, b)) continue;
+            next.rates.set(i, rate);
+            next.paths.set(i, path);
+        }
+        return next;
+    }
+
+    // Scaled rate from -> to, or 0 when the two currencies are not connected.
+    long get(RateTable table, int from, int to) {
+        if (from >= size || to >= size) return 0;
+        int index = from * size + to;
+        long cached = rates.get(index);
+        if (cached == 0) {
+            cached = derive(table, from, to, index);
+        }
+        return cached == NO_PATH ? 0 : cached;
+    }
+
+    private long derive(RateTable table, int from, int to, int index) {
+        int[] previous = new int[size];
+        Arrays.fill(previous, -1);
+        previous[from] = from;
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        while (head < tail && previous[to] < 0) {
+            int u = queue[head++];
+            for (int v = 0; v < size; v++) {
+                if (previous[v] >= 0) continue;
+                if (table.get(u, v) != 0 || table.get(v, u) != 0) {
+                    previous[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        if (previous[to] < 0) {
+            rates.set(index, NO_PATH);
+            return NO_PATH;
+        }
+        int hops = 0;
+        for (int v = to; v != from; v = previous[v]) hops++;
+        int[] path = new int[hops + 1];
+        for (int v = to, i = hops; i >= 0; v = previous[v], i--) path[i] = v;
+
+        BigDecimal rate = BigDecimal.ONE;
+        for (int i = 0; i < hops; i++) {
+            rate = rate.multiply(edge(table, path[i], path[i + 1]));
+        }
+        long scaled = Math.max(1, rate.movePointRight(FixedPoint.RATE_DIGITS).setScale(0, RoundingMode.HALF_EVEN).longValueExact());
+        paths.set(index, path);
+        rates.set(index, scaled);
+        return scaled;
+    }
+
+    private static BigDecimal edge(RateTable table, int u, int v) {
+        long direct = table.get(u, v);
+        if (direct != 0) return BigDecimal.valueOf(direct, FixedPoint.RATE_DIGITS);
+        return BigDecimal.ONE.divide(BigDecimal.valueOf(table.get(v, u), FixedPoint.RATE_DIGITS), 2 * FixedPoint.RATE_DIGITS, RoundingMode.HALF_EVEN);
+    }
+
+    private static boolean usesAny(int[] path, int[] a, int[] b) {
+        for (int i = 0; i + 1 < path.length; i++) {
+            int u = path[i];
+            int v = path[i + 1];
+            for (int j = 0; j < a.length; j++) {
+                if ((u == a[j] && v == b[j]) || (u == b[j] && v == a[j])) return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps ISO codes to small dense ids so rates can live in a primitive matrix.
+// Ids are only created by register(), which rate writes and trusted construction use. Reads and
+// anything parsed from a request go through find(), which never grows the registry: every id
+// widens the rate matrix, so unknown codes from clients must be rejected, not registered.
+final class Currencies {
+    private static final int DEFAULT_SCALE = 2;
+    // far above the ISO 4217 list; keeps a count-squared rate matrix allocatable
+    static final int MAX_CURRENCIES = 1024;
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] codes = new String[0];
+    private static volatile int[] scales = new int[0];
+
+    static final int USD = register("USD");
+    static final int CHF = register("CHF");
+
+    private Currencies() { }
+
+    // Id of a known currency; throws IllegalArgumentException for a code never registered.
+    static int find(String code) {
+        Integer id = ids.get(code);
+        if (id == null) throw new IllegalArgumentException("unknown currency " + code);
+        return id;
+    }
+
+    static int register(String code) {
+        Integer id = ids.get(code);
+        return id != null ? id : add(code);
+    }
+
+    static String code(int id) {
+        return codes[id];
+    }
+
+    // Number of minor-unit digits, e.g. 2 for USD, 0 for JPY.
+    static int scale(int id) {
+        return scales[id];
+    }
+
+    static int count() {
+        return codes.length;
+    }
+
+    private static synchronized int add(String code) {
+        Integer existing = ids.get(code);
+        if (existing != null) return existing;
+        int id = codes.length;
+        if (id == MAX_CURRENCIES) throw new IllegalStateException("more than " + MAX_CURRENCIES + " currencies");
+        int[] nextScales = Arrays.copyOf(scales, id + 1);
+        nextScales[id] = defaultScale(code);
+        String[] nextCodes = Arrays.copyOf(codes, id + 1);
+        nextCodes[id] = code;
+        scales = nextScales;
+        codes = nextCodes;
+        ids.put(code, id);
+        return id;
+    }
+
+    private static int defaultScale(String code) {
+        try {
+            int digits = Currency.getInstance(code).getDefaultFractionDigits();
+            return digits >= 0 ? digits : DEFAULT_SCALE;
+        } catch (IllegalArgumentException unknown) {
+            return DEFAULT_SCALE;
+        }
+    }
+}
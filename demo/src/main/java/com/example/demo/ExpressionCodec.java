@@ -0,0 +1,223 @@
+package com.example.demo;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// Binary wire format for expressions:
+//   version byte, varint currency count, then each ISO code as length byte + ASCII,
+//   then the tree in pre-order:
+//     MONEY   varint local currency index, zigzag varint amount (minor units)
+//     SUM     augend, addend
+//     MULTI   varint term count, terms
+//     SCALED  zigzag varint multiplier, expression
+// Currency codes are written once per message and referenced by index. Both directions walk
+// with an explicit stack, so a deep Sum chain costs heap, not call stack.
+// Decoding treats the bytes as untrusted: codes must already be registered, and every child
+// slot a header announces must be backed by at least one unread byte, so memory stays linear in
+// the message size however the headers are nested.
+final class ExpressionCodec {
+    static final byte VERSION = 1;
+
+    private static final byte MONEY = 0;
+    private static final byte SUM = 1;
+    private static final byte MULTI = 2;
+    private static final byte SCALED = 3;
+
+    private ExpressionCodec() { }
+
+    static byte[] encode(Expression expression) {
+        Output tree = new Output(64);
+        int[] localIds = new int[Currencies.count()];
+        int[] globalIds = new int[4];
+        int currencies = 0;
+
+        ArrayDeque<Expression> stack = new ArrayDeque<>();
+        stack.push(expression);
+        while (!stack.isEmpty()) {
+            Expression e = stack.pop();
+            if (e instanceof Money m) {
+                int id = m.currencyId;
+                if (id >= localIds.length) localIds = Arrays.copyOf(localIds, Currencies.count());
+                if (localIds[id] == 0) {
+                    if (currencies == globalIds.length) globalIds = Arrays.copyOf(globalIds, currencies * 2);
+                    globalIds[currencies++] = id;
+                    localIds[id] = currencies;
+                }
+                tree.write(MONEY);
+                tree.writeVarint(localIds[id] - 1);
+                tree.writeVarint(zigzag(m.amount));
+            } else if (e instanceof Sum s) {
+                tree.write(SUM);
+                stack.push(s.addend);
+                stack.push(s.augend);
+            } else if (e instanceof MultiSum ms) {
+                tree.write(MULTI);
+                tree.writeVarint(ms.size());
+                for (int i = ms.size() - 1; i >= 0; i--) stack.push(ms.term(i));
+            } else if (e instanceof Scaled sc) {
+                tree.write(SCALED);
+                tree.writeVarint(zigzag(sc.multiplier));
+                stack.push(sc.expression);
+            } else {
+                throw new IllegalArgumentException("cannot encode " + e.getClass().getName());
+            }
+        }
+
+        Output out = new Output(tree.size + 8 + currencies * 4);
+        out.write(VERSION);
+        out.writeVarint(currencies);
+        for (int i = 0; i < currencies; i++) {
+            byte[] code = Currencies.code(globalIds[i]).getBytes(StandardCharsets.US_ASCII);
+            out.write((byte) code.length);
+            out.write(code, code.length);
+        }
+        out.write(tree.bytes, tree.size);
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    // Reads one expression starting at the buffer's position and leaves the position after it.
+    static Expression decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported codec version " + version);
+            int[] currencies = new int[checkedCount(readVarint(in), in)];
+            for (int i = 0; i < currencies.length; i++) {
+                int length = in.get() & 0xFF;
+                byte[] code = new byte[length];
+                in.get(code);
+                currencies[i] = Currencies.find(new String(code, StandardCharsets.US_ASCII));
+            }
+            return decodeTree(in, currencies);
+        } catch (BufferUnderflowException truncated) {
+            throw new IllegalArgumentException("truncated expression", truncated);
+        }
+    }
+
+    private static Expression decodeTree(ByteBuffer in, int[] currencies) {
+        ArrayDeque<Frame> open = new ArrayDeque<>();
+        // child slots announced by open frames whose node has not started yet
+        long unstarted = 0;
+        while (true) {
+            Expression done;
+            byte tag = in.get();
+            if (!open.isEmpty()) unstarted--;
+            switch (tag) {
+                case MONEY -> {
+                    int local = Math.toIntExact(readVarint(in));
+                    if (local >= currencies.length) throw new IllegalArgumentException("unknown currency index " + local);
+                    done = Money.valueOf(unzigzag(readVarint(in)), currencies[local]);
+                }
+                case SUM -> {
+                    unstarted = reserve(unstarted, 2, in);
+                    open.push(new Frame(SUM, 2, 0));
+                    continue;
+                }
+                case MULTI -> {
+                    long terms = readVarint(in);
+                    if (terms == 0) throw new IllegalArgumentException("empty sum");
+                    unstarted = reserve(unstarted, terms, in);
+                    open.push(new Frame(MULTI, (int) terms, 0));
+                    continue;
+                }
+                case SCALED -> {
+                    int multiplier = Math.toIntExact(unzigzag(readVarint(in)));
+                    unstarted = reserve(unstarted, 1, in);
+                    open.push(new Frame(SCALED, 1, multiplier));
+                    continue;
+                }
+                default -> throw new IllegalArgumentException("unknown tag " + tag);
+            }
+            // attach to parents, closing every frame this completes
+            while (true) {
+                Frame parent = open.peek();
+                if (parent == null) return done;
+                parent.children[parent.filled++] = done;
+                if (parent.filled < parent.children.length) break;
+                open.pop();
+                done = parent.build();
+            }
+        }
+    }
+
+    // Each unstarted child takes at least one byte, so together they cannot outnumber the bytes left.
+    private static long reserve(long unstarted, long children, ByteBuffer in) {
+        if (children < 0 || children > in.remaining() - unstarted) throw new IllegalArgumentException("bad count " + children);
+        return unstarted + children;
+    }
+
+    private static int checkedCount(long count, ByteBuffer in) {
+        // every entry takes at least one byte, so a larger count can only be garbage
+        if (count < 0 || count > in.remaining()) throw new IllegalArgumentException("bad count " + count);
+        return (int) count;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+    private static final class Frame {
+        final byte tag;
+        final Expression[] children;
+        final int multiplier;
+        int filled;
+
+        Frame(byte tag, int children, int multiplier) {
+            this.tag = tag;
+            this.children = new Expression[children];
+            this.multiplier = multiplier;
+        }
+
+        Expression build() {
+            return switch (tag) {
+                case SUM -> new Sum(children[0], children[1]);
+                case MULTI -> new MultiSum(children);
+                default -> new Scaled(children[0], multiplier);
+            };
+        }
+    }
+
+    private static final class Output {
+        byte[] bytes;
+        int size;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(byte b) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = b;
+        }
+
+        void write(byte[] source, int length) {
+            if (size + length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((byte) value);
+        }
+    }
+}
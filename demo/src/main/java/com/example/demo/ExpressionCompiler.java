@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Flattens an expression into a ReductionPlan: times multipliers are folded into the amounts and
+// leaves of the same currency are merged. Walks with an explicit stack, so deep left-leaning Sum
+// chains cannot overflow the call stack, and reuses the plan of any subtree that already has one.
+final class ExpressionCompiler {
+    private ExpressionCompiler() { }
+
+    static ReductionPlan compile(Expression source) {
+        MoneyAccumulator totals = new MoneyAccumulator();
+        List<Expression> opaque = new ArrayList<>(0);
+        ArrayDeque<Expression> stack = new ArrayDeque<>();
+        ArrayDeque<Long> multipliers = new ArrayDeque<>();
+        stack.push(source);
+        multipliers.push(1L);
+        while (!stack.isEmpty()) {
+            Expression e = stack.pop();
+            long multiplier = multipliers.pop();
+            ReductionPlan cached = e == source ? null : cachedPlan(e);
+            if (cached != null) {
+                for (int i = 0; i < cached.terms(); i++) {
+                    totals.add(cached.currency(i), Math.multiplyExact(cached.amount(i), multiplier));
+                }
+                for (Expression o : cached.opaque()) opaque.add(scale(o, multiplier));
+            } else if (e instanceof Money m) {
+                totals.add(m.currencyId, Math.multiplyExact(m.amount, multiplier));
+            } else if (e instanceof Sum s) {
+                stack.push(s.addend);
+                multipliers.push(multiplier);
+                stack.push(s.augend);
+                multipliers.push(multiplier);
+            } else if (e instanceof MultiSum ms) {
+                for (int i = ms.size() - 1; i >= 0; i--) {
+                    stack.push(ms.term(i));
+                    multipliers.push(multiplier);
+                }
+            } else if (e instanceof Scaled sc) {
+                stack.push(sc.expression);
+                multipliers.push(Math.multiplyExact(multiplier, sc.multiplier));
+            } else {
+                // Unknown expression types can depend on the bank, so they are reduced at plan time.
+                opaque.add(scale(e, multiplier));
+            }
+        }
+        return totals.toPlan(opaque.toArray(new Expression[0]));
+    }
+
+    // The node's cached plan when it keeps one, otherwise a fresh compile.
+    static ReductionPlan planOf(Expression e) {
+        if (e instanceof Sum s) return s.plan();
+        if (e instanceof MultiSum ms) return ms.plan();
+        if (e instanceof Scaled sc) return sc.plan();
+        return compile(e);
+    }
+
+    private static ReductionPlan cachedPlan(Expression e) {
+        if (e instanceof Sum s) return s.cachedPlan();
+        if (e instanceof MultiSum ms) return ms.cachedPlan();
+        if (e instanceof Scaled sc) return sc.cachedPlan();
+        return null;
+    }
+
+    private static Expression scale(Expression e, long multiplier) {
+        return multiplier == 1 ? e : e.times(Math.toIntExact(multiplier));
+    }
+}
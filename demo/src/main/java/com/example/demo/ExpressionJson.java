@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+
+// JSON shape of expressions on the wire:
+//   money  {"amount": "5.00", "currency": "USD"}
+//   sum    {"sum": [expression, ...]}
+//   scaled {"times": 2, "of": expression}
+// Input comes from clients, so currencies must already be known; reading never registers one.
+final class ExpressionJson {
+    private static final Object END_SUM = new Object();
+    private static final Object END_SCALED = new Object();
+
+    private ExpressionJson() { }
+
+    static Expression read(JsonNode node) {
+        if (node == null || !node.isObject()) throw new IllegalArgumentException("expression must be an object");
+        if (node.has("sum")) {
+            JsonNode terms = node.get("sum");
+            if (!terms.isArray() || terms.isEmpty()) throw new IllegalArgumentException("sum needs at least one term");
+            Expression[] parts = new Expression[terms.size()];
+            for (int i = 0; i < parts.length; i++) parts[i] = read(terms.get(i));
+            return parts.length == 1 ? parts[0] : new MultiSum(parts);
+        }
+        if (node.has("times")) {
+            JsonNode times = node.get("times");
+            if (!times.canConvertToInt()) throw new IllegalArgumentException("times must be an int");
+            return read(node.get("of")).times(times.intValue());
+        }
+        JsonNode amount = node.get("amount");
+        JsonNode currency = node.get("currency");
+        if (amount == null || currency == null || !currency.isTextual()) {
+            throw new IllegalArgumentException("money needs amount and currency");
+        }
+        try {
+            return Money.of(new BigDecimal(amount.asText()), Currencies.find(currency.asText()));
+        } catch (ArithmeticException tooPrecise) {
+            throw new IllegalArgumentException("amount " + amount.asText() + " has more digits than " + currency.asText() + " allows");
+        }
+    }
+
+    static void write(Money money, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("amount", money.toBigDecimal().toPlainString());
+        out.writeStringField("currency", money.currency());
+        out.writeEndObject();
+    }
+
+    static void write(Expression expression, JsonGenerator out) throws IOException {
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(expression);
+        while (!stack.isEmpty()) {
+            Object next = stack.pop();
+            if (next == END_SUM) {
+                out.writeEndArray();
+                out.writeEndObject();
+            } else if (next == END_SCALED) {
+                out.writeEndObject();
+            } else if (next instanceof Money m) {
+                write(m, out);
+            } else if (next instanceof Sum s) {
+                out.writeStartObject();
+                out.writeArrayFieldStart("sum");
+                stack.push(END_SUM);
+                stack.push(s.addend);
+                stack.push(s.augend);
+            } else if (next instanceof MultiSum ms) {
+                out.writeStartObject();
+                out.writeArrayFieldStart("sum");
+                stack.push(END_SUM);
+                for (int i = ms.size() - 1; i >= 0; i--) stack.push(ms.term(i));
+            } else if (next instanceof Scaled sc) {
+                out.writeStartObject();
+                out.writeNumberField("times", sc.multiplier);
+                out.writeFieldName("of");
+                stack.push(END_SCALED);
+                stack.push(sc.expression);
+            } else {
+                throw new IllegalArgumentException("cannot write " + next.getClass().getName());
+            }
+        }
+    }
+}
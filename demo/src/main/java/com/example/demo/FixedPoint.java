@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Scaled-long arithmetic for the conversion hot path. Falls back to BigDecimal only when a
+// product would overflow a long.
+final class FixedPoint {
+    static final int RATE_DIGITS = 9;
+    static final long RATE_SCALE = 1_000_000_000L;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private FixedPoint() { }
+
+    static long toScaledRate(BigDecimal rate) {
+        long scaled = rate.movePointRight(RATE_DIGITS).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+        if (scaled <= 0) throw new IllegalArgumentException("rate must be positive: " + rate);
+        return scaled;
+    }
+
+    static BigDecimal fromScaledRate(long scaledRate) {
+        BigDecimal rate = BigDecimal.valueOf(scaledRate, RATE_DIGITS).stripTrailingZeros();
+        return rate.scale() < 0 ? rate.setScale(0) : rate;
+    }
+
+    // amount (minor units at fromScale) / rate, expressed in minor units at toScale.
+    static long convert(long amount, int fromScale, int toScale, long scaledRate, RoundingMode mode) {
+        int shift = toScale - fromScale;
+        if (Math.abs(shift) < POWERS_OF_TEN.length) {
+            try {
+                long numerator = Math.multiplyExact(amount, RATE_SCALE);
+                long denominator = scaledRate;
+                if (shift > 0) numerator = Math.multiplyExact(numerator, POWERS_OF_TEN[shift]);
+                if (shift < 0) denominator = Math.multiplyExact(denominator, POWERS_OF_TEN[-shift]);
+                return divide(numerator, denominator, mode);
+            } catch (ArithmeticException overflow) {
+                // fall through to the exact path
+            }
+        }
+        return BigDecimal.valueOf(amount)
+                .movePointRight(RATE_DIGITS + shift)
+                .divide(BigDecimal.valueOf(scaledRate), 0, mode)
+                .longValueExact();
+    }
+
+    static long pow10(int digits) {
+        return POWERS_OF_TEN[digits];
+    }
+
+    static long divide(long numerator, long denominator, RoundingMode mode) {
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        if (remainder == 0) return quotient;
+        int sign = (numerator < 0) == (denominator < 0) ? 1 : -1;
+        long absRemainder = Math.abs(remainder);
+        long distanceToNext = Math.abs(denominator) - absRemainder;
+        boolean awayFromZero = switch (mode) {
+            case DOWN -> false;
+            case UP -> true;
+            case FLOOR -> sign < 0;
+            case CEILING -> sign > 0;
+            case HALF_UP -> absRemainder >= distanceToNext;
+            case HALF_DOWN -> absRemainder > distanceToNext;
+            case HALF_EVEN -> absRemainder > distanceToNext
+                    || (absRemainder == distanceToNext && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("rounding necessary");
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+// Money positions kept off-heap in a memory-mapped file of fixed-width records:
+//   header   magic "LDGR", format version, record size                 (16 bytes)
+//   record   long amount, long account, int currency, int crc32, pad   (32 bytes)
+// The currency is stored as its ISO code packed into an int, because Currencies ids are only
+// stable within one process. Records are appended in order; opening a file replays it and
+// stops at the first record whose checksum fails, which is where a crash cut the last write.
+// Recovery then cuts the file back to that point: records the crash left beyond the torn one
+// would otherwise be overwritten only partly by later appends and come back on the next open.
+public class LedgerStore implements AutoCloseable {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 32;
+    static final int MAGIC = 0x4C444752; // "LDGR"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int CHECKED_BYTES = 20;
+    private static final int CRC_OFFSET = 20;
+    private static final int RECOVERY_CHUNK = 4096;
+
+    private final FileChannel channel;
+    private final int recordsPerSegment;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private volatile long size;
+
+    public static LedgerStore open(Path file) throws IOException {
+        return open(file, 1 << 21);
+    }
+
+    // recordsPerSegment sets how far the file grows per mapping (1 << 21 records is 64MB).
+    static LedgerStore open(Path file, int recordsPerSegment) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new LedgerStore(channel, recordsPerSegment);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private LedgerStore(FileChannel channel, int recordsPerSegment) throws IOException {
+        this.channel = channel;
+        this.recordsPerSegment = recordsPerSegment;
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) == 0) {
+            header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, RECORD_BYTES);
+            header.force();
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != RECORD_BYTES) {
+            throw new IOException("not a ledger file or unsupported version");
+        }
+        size = recover();
+    }
+
+    public synchronized void append(Money money, long account) throws IOException {
+        long index = size;
+        MappedByteBuffer segment = segmentFor(index);
+        int offset = offsetOf(index);
+        segment.putLong(offset, money.amount);
+        segment.putLong(offset + 8, account);
+        segment.putInt(offset + 16, packCode(money.currency()));
+        segment.putInt(offset + CRC_OFFSET, checksum(segment, offset));
+        size = index + 1;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    Money get(long index) {
+        checkIndex(index);
+        MappedByteBuffer segment = segments.get(segmentIndex(index));
+        int offset = offsetOf(index);
+        return Money.valueOf(segment.getLong(offset), Currencies.register(unpackCode(segment.getInt(offset + 16))));
+    }
+
+    long account(long index) {
+        checkIndex(index);
+        return segments.get(segmentIndex(index)).getLong(offsetOf(index) + 8);
+    }
+
+    // Per-currency totals over every record, one parallel task per mapped segment.
+    MoneyAccumulator totals() {
+        long end = size;
+        int segmentCount = (int) ((end + recordsPerSegment - 1) / recordsPerSegment);
+        return IntStream.range(0, segmentCount).parallel()
+                .collect(MoneyAccumulator::new, (totals, s) -> totals.addAll(sumSegment(segments.get(s), s, end)), MoneyAccumulator::addAll);
+    }
+
+    Money reduce(Bank bank, String to) {
+        return totals().reduce(bank.snapshot(), to);
+    }
+
+    // Makes appended records durable.
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MoneyAccumulator sumSegment(MappedByteBuffer segment, int s, long end) {
+        MoneyAccumulator totals = new MoneyAccumulator();
+        long first = (long) s * recordsPerSegment;
+        int records = (int) Math.min(recordsPerSegment, end - first);
+        int lastCode = 0;
+        int lastCurrency = -1;
+        for (int i = 0; i < records; i++) {
+            int offset = i * RECORD_BYTES;
+            int code = segment.getInt(offset + 16);
+            if (code != lastCode || lastCurrency < 0) {
+                lastCode = code;
+                lastCurrency = Currencies.register(unpackCode(code));
+            }
+            totals.add(lastCurrency, segment.getLong(offset));
+        }
+        return totals;
+    }
+
+    // Runs before any segment is mapped, so the file can still be truncated.
+    private long recover() throws IOException {
+        long fileRecords = Math.max(0, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+        ByteBuffer chunk = ByteBuffer.allocate(RECOVERY_CHUNK * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long count = 0;
+        scan:
+        while (count < fileRecords) {
+            int n = (int) Math.min(RECOVERY_CHUNK, fileRecords - count);
+            chunk.clear().limit(n * RECORD_BYTES);
+            long position = HEADER_BYTES + count * RECORD_BYTES;
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + chunk.position()) < 0) throw new IOException("ledger file truncated");
+            }
+            for (int i = 0; i < n; i++) {
+                int offset = i * RECORD_BYTES;
+                if (chunk.getInt(offset + CRC_OFFSET) != checksum(chunk, offset)) break scan;
+                count++;
+            }
+        }
+        long end = HEADER_BYTES + count * RECORD_BYTES;
+        if (channel.size() > end) {
+            // mapping the segments grows the file again, with zeros
+            channel.truncate(end);
+            channel.force(true);
+        }
+        if (count > 0) segmentFor(count - 1);
+        return count;
+    }
+
+    private MappedByteBuffer segmentFor(long index) throws IOException {
+        int s = segmentIndex(index);
+        while (segments.size() <= s) {
+            long start = HEADER_BYTES + (long) segments.size() * recordsPerSegment * RECORD_BYTES;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, start, (long) recordsPerSegment * RECORD_BYTES);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.add(segment);
+        }
+        return segments.get(s);
+    }
+
+    private int segmentIndex(long index) {
+        return (int) (index / recordsPerSegment);
+    }
+
+    private int offsetOf(long index) {
+        return (int) (index % recordsPerSegment) * RECORD_BYTES;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("record " + index + " of " + size);
+    }
+
+    private static int checksum(ByteBuffer segment, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(offset, CHECKED_BYTES));
+        // the CRC32 of zero bytes is not zero, so preallocated space never reads as a record
+        return (int) crc.getValue();
+    }
+
+    static int packCode(String code) {
+        byte[] bytes = code.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > 4) throw new IllegalArgumentException("currency code must be 1-4 ASCII chars: " + code);
+        int packed = 0;
+        for (byte b : bytes) packed = packed << 8 | (b & 0xFF);
+        return packed;
+    }
+
+    static String unpackCode(int packed) {
+        StringBuilder code = new StringBuilder(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = packed >>> shift & 0xFF;
+            if (c != 0) code.append((char) c);
+        }
+        return code.toString();
+    }
+}
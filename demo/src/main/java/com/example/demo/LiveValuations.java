@@ -0,0 +1,165 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Keeps registered expressions valued in their target currency as rates change.
+// Each expression is held as its reduction plan, one subtotal per source currency, plus the
+// converted value of each subtotal. An index from (source, target) pair to the terms using it
+// remembers the rate each pair was last valued at; on a rate change only pairs whose rate
+// actually moved are revalued, so the cost is O(affected terms), not a walk of every tree.
+// A change to one quote can move derived cross rates, so every indexed pair between currencies
+// the changed ones are connected to is rechecked; pairs elsewhere in the rate graph are skipped.
+// New values are all computed before any is stored, so a failure part way leaves the old ones.
+// Expressions with parts the plan cannot see into are kept apart and fully re-reduced.
+public class LiveValuations implements RateListener {
+    private final Bank bank;
+    private final Map<Long, Dependents> index = new HashMap<>();
+    private final Map<String, Valuation> valuations = new LinkedHashMap<>();
+    private final Set<Valuation> opaque = new LinkedHashSet<>();
+    private final List<Consumer<ValuationChange>> subscribers = new CopyOnWriteArrayList<>();
+
+    public LiveValuations(Bank bank) {
+        this.bank = bank;
+        bank.subscribe(this);
+    }
+
+    // Values the expression now; throws IllegalArgumentException if a rate it needs is missing.
+    synchronized Money register(String id, Expression expression, String to) {
+        if (valuations.containsKey(id)) throw new IllegalArgumentException("already registered: " + id);
+        Bank rates = bank.snapshot();
+        ReductionPlan plan = ExpressionCompiler.planOf(expression);
+        int target = Currencies.find(to);
+        Valuation v = new Valuation(id, plan, target);
+        // value every term before indexing any, so a missing rate leaves nothing behind
+        long[] termRates = new long[plan.terms()];
+        for (int i = 0; i < plan.terms(); i++) {
+            termRates[i] = rates.scaledRate(plan.currency(i), target);
+            v.converted[i] = rates.convert(plan.amount(i), plan.currency(i), target);
+            v.total = Math.addExact(v.total, v.converted[i]);
+        }
+        for (Expression e : plan.opaque()) v.total = Math.addExact(v.total, e.reduce(rates, to).amount);
+        for (int i = 0; i < plan.terms(); i++) {
+            long rate = termRates[i];
+            Dependents d = index.computeIfAbsent(pair(plan.currency(i), target), k -> new Dependents(rate));
+            d.terms.add(new Term(v, i));
+        }
+        if (plan.opaque().length > 0) opaque.add(v);
+        valuations.put(id, v);
+        return v.value();
+    }
+
+    synchronized void unregister(String id) {
+        Valuation v = valuations.remove(id);
+        if (v == null) return;
+        opaque.remove(v);
+        for (int i = 0; i < v.plan.terms(); i++) {
+            long key = pair(v.plan.currency(i), v.target);
+            Dependents d = index.get(key);
+            d.terms.removeIf(t -> t.valuation == v);
+            if (d.terms.isEmpty()) index.remove(key);
+        }
+    }
+
+    synchronized Money value(String id) {
+        Valuation v = valuations.get(id);
+        return v == null ? null : v.value();
+    }
+
+    void subscribe(Consumer<ValuationChange> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public synchronized void ratesChanged(Bank rates, int[] from, int[] to) {
+        // a quote can move cross rates, but only between currencies it is connected to
+        boolean[] connected = rates.connected(from, to);
+        // work out every new value before changing any, so a failure leaves the old ones intact
+        Map<Dependents, Long> movedRates = new HashMap<>();
+        Map<Valuation, long[]> converted = new LinkedHashMap<>();
+        Map<Valuation, Long> totals = new LinkedHashMap<>();
+        for (Map.Entry<Long, Dependents> e : index.entrySet()) {
+            int source = (int) (e.getKey() >>> 32);
+            int target = (int) (long) e.getKey();
+            if (!isConnected(connected, source) && !isConnected(connected, target)) continue;
+            Dependents d = e.getValue();
+            long rate = rates.scaledRate(source, target);
+            if (rate == d.rate) continue;
+            movedRates.put(d, rate);
+            for (Term t : d.terms) {
+                Valuation v = t.valuation;
+                long[] values = converted.computeIfAbsent(v, x -> x.converted.clone());
+                long value = rates.convert(v.plan.amount(t.index), source, target);
+                totals.put(v, Math.addExact(totals.getOrDefault(v, v.total) - values[t.index], value));
+                values[t.index] = value;
+            }
+        }
+        for (Valuation v : opaque) {
+            totals.put(v, v.plan.reduce(rates, Currencies.code(v.target)).amount);
+        }
+
+        List<ValuationChange> changes = new ArrayList<>(totals.size());
+        for (Map.Entry<Dependents, Long> e : movedRates.entrySet()) e.getKey().rate = e.getValue();
+        for (Map.Entry<Valuation, long[]> e : converted.entrySet()) e.getKey().converted = e.getValue();
+        for (Map.Entry<Valuation, Long> e : totals.entrySet()) {
+            Valuation v = e.getKey();
+            long previous = v.total;
+            v.total = e.getValue();
+            if (v.total != previous) changes.add(new ValuationChange(v.id, Money.valueOf(previous, v.target), v.value()));
+        }
+        for (ValuationChange change : changes) {
+            for (Consumer<ValuationChange> subscriber : subscribers) subscriber.accept(change);
+        }
+    }
+
+    private static boolean isConnected(boolean[] connected, int currency) {
+        return currency < connected.length && connected[currency];
+    }
+
+    record ValuationChange(String id, Money previous, Money current) {
+        Money delta() {
+            return Money.valueOf(current.amount - previous.amount, current.currencyId);
+        }
+    }
+
+    private static long pair(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    private static final class Valuation {
+        final String id;
+        final ReductionPlan plan;
+        final int target;
+        long[] converted;
+        long total;
+
+        Valuation(String id, ReductionPlan plan, int target) {
+            this.id = id;
+            this.plan = plan;
+            this.target = target;
+            this.converted = new long[plan.terms()];
+        }
+
+        Money value() {
+            return Money.valueOf(total, target);
+        }
+    }
+
+    private record Term(Valuation valuation, int index) { }
+
+    private static final class Dependents {
+        final List<Term> terms = new ArrayList<>();
+        long rate;
+
+        Dependents(long rate) {
+            this.rate = rate;
+        }
+    }
+}
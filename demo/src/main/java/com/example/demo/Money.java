@@ -1,31 +1,68 @@
 package com.example.demo;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+// Immutable value; amount is in minor units of the currency (cents for USD), see Currencies.scale.
+// Whole amounts from 0 to CACHED_MAJOR_UNITS - 1 in each currency are shared instances.
 public class Money implements Expression {
-    int amount;
-    protected String currency;
+    static final int CACHED_MAJOR_UNITS = 1024;
+
+    private static volatile Money[][] cache = new Money[0][];
+
+    final long amount;
+    private final String currency;
+    final int currencyId;
 
-    Money(int amount, String currency) {
+    Money(long amount, int currencyId) {
         this.amount = amount;
-        this.currency = currency;
+        this.currencyId = currencyId;
+        this.currency = Currencies.code(currencyId);
+    }
+
+    static Money valueOf(long amount, int currencyId) {
+        long unit = FixedPoint.pow10(Currencies.scale(currencyId));
+        if (amount < 0 || amount % unit != 0 || amount / unit >= CACHED_MAJOR_UNITS) {
+            return new Money(amount, currencyId);
+        }
+        return cached(currencyId)[(int) (amount / unit)];
+    }
+
+    static Money of(long amount, String currency) {
+        int id = Currencies.register(currency);
+        return valueOf(Math.multiplyExact(amount, FixedPoint.pow10(Currencies.scale(id))), id);
+    }
+
+    static Money of(BigDecimal amount, String currency) {
+        return of(amount, Currencies.register(currency));
+    }
+
+    // Throws ArithmeticException if the amount has more digits than the currency's minor unit.
+    static Money of(BigDecimal amount, int currencyId) {
+        return valueOf(amount.movePointRight(Currencies.scale(currencyId)).longValueExact(), currencyId);
     }
 
     static Money dollar(int amount) {
-        return new Money(amount, "USD");
+        return of(amount, "USD");
     }
 
     static Money franc(int amount) {
-    return new Money(amount, "CHF");
+    return of(amount, "CHF");
     }
 
     @Override
     public Expression times(int multiplier) {
-        return new Money(amount * multiplier, currency);
+        return valueOf(Math.multiplyExact(amount, multiplier), currencyId);
     }
 
     String currency() {
         return  currency;
     }
 
+    BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(amount, Currencies.scale(currencyId));
+    }
+
     @Override
     public Expression plus(Expression addend) {
         return new Sum(this, addend);
@@ -33,19 +70,43 @@ public class Money implements Expression {
 
     @Override
     public Money reduce(Bank bank, String to) {
-        int rate = bank.rate(currency, to);
-        return new Money(amount / rate, to);
+        int toId = Currencies.find(to);
+        return valueOf(bank.convert(amount, currencyId, toId), toId);
     }
 
     @Override
     public boolean equals(Object o) {
-        Money money = (Money) o;
+        if (this == o) return true;
+        if (!(o instanceof Money money)) return false;
         return amount == money.amount
-                && currency().equals(money.currency());
+                && currencyId == money.currencyId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(amount) + currencyId;
     }
 
     @Override
     public String toString() {
-        return amount + " " + currency;
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private static Money[] cached(int currencyId) {
+        Money[][] all = cache;
+        if (currencyId < all.length && all[currencyId] != null) return all[currencyId];
+        return fill(currencyId);
+    }
+
+    private static synchronized Money[] fill(int currencyId) {
+        Money[][] all = cache;
+        if (currencyId < all.length && all[currencyId] != null) return all[currencyId];
+        long unit = FixedPoint.pow10(Currencies.scale(currencyId));
+        Money[] values = new Money[CACHED_MAJOR_UNITS];
+        for (int i = 0; i < values.length; i++) values[i] = new Money(i * unit, currencyId);
+        Money[][] next = Arrays.copyOf(all, Math.max(all.length, currencyId + 1));
+        next[currencyId] = values;
+        cache = next;
+        return values;
     }
 }
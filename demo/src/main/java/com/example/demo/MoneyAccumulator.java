@@ -0,0 +1,71 @@
+package com.example.demo;
+
+import java.util.Arrays;
+
+// Mutable per-currency running total for hot loops: adding a position touches one long and
+// allocates nothing. Not thread-safe; reuse one per thread and reset() between batches.
+public final class MoneyAccumulator {
+    private long[] totals = new long[Currencies.count()];
+    private boolean[] seen = new boolean[Currencies.count()];
+    private int[] order = new int[8];
+    private int count;
+
+    void add(Money money) {
+        add(money.currencyId, money.amount);
+    }
+
+    void add(int currency, long amount) {
+        if (currency >= totals.length) {
+            totals = Arrays.copyOf(totals, Currencies.count());
+            seen = Arrays.copyOf(seen, Currencies.count());
+        }
+        if (!seen[currency]) {
+            seen[currency] = true;
+            if (count == order.length) order = Arrays.copyOf(order, count * 2);
+            order[count++] = currency;
+        }
+        totals[currency] = Math.addExact(totals[currency], amount);
+    }
+
+    void addAll(MoneyAccumulator other) {
+        for (int i = 0; i < other.count; i++) add(other.order[i], other.totals[other.order[i]]);
+    }
+
+    // Currencies in first-seen order.
+    int currencies() {
+        return count;
+    }
+
+    int currency(int index) {
+        return order[index];
+    }
+
+    long total(int currency) {
+        return currency < totals.length ? totals[currency] : 0;
+    }
+
+    // Each currency's total is converted once.
+    Money reduce(Bank bank, String to) {
+        int toId = Currencies.find(to);
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum = Math.addExact(sum, bank.convert(totals[order[i]], order[i], toId));
+        }
+        return Money.valueOf(sum, toId);
+    }
+
+    void reset() {
+        for (int i = 0; i < count; i++) {
+            totals[order[i]] = 0;
+            seen[order[i]] = false;
+        }
+        count = 0;
+    }
+
+    ReductionPlan toPlan(Expression[] opaque) {
+        int[] currencies = Arrays.copyOf(order, count);
+        long[] amounts = new long[count];
+        for (int i = 0; i < count; i++) amounts[i] = totals[currencies[i]];
+        return new ReductionPlan(currencies, amounts, opaque);
+    }
+}
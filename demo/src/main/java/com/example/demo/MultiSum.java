@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// N-ary sum. plus() appends into a shared array when this view is its latest owner, so a chain
+// of plus calls stays flat and costs amortized O(1) instead of nesting a Sum per call.
+public class MultiSum implements Expression {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Expression[] terms;
+    private final int size;
+    private final AtomicInteger used;
+    private volatile ReductionPlan plan;
+
+    MultiSum(Expression... terms) {
+        this(grow(terms, terms.length), terms.length);
+    }
+
+    private MultiSum(Expression[] terms, int size) {
+        this(terms, size, new AtomicInteger(size));
+    }
+
+    private MultiSum(Expression[] terms, int size, AtomicInteger used) {
+        this.terms = terms;
+        this.size = size;
+        this.used = used;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Expression term(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException(index);
+        return terms[index];
+    }
+
+    ReductionPlan cachedPlan() {
+        return plan;
+    }
+
+    ReductionPlan plan() {
+        ReductionPlan p = plan;
+        if (p == null) {
+            p = ExpressionCompiler.compile(this);
+            plan = p;
+        }
+        return p;
+    }
+
+    @Override
+    public Money reduce(Bank bank, String to) {
+        return plan().reduce(bank, to);
+    }
+
+    @Override
+    public Expression plus(Expression addend) {
+        if (size < terms.length && used.compareAndSet(size, size + 1)) {
+            terms[size] = addend;
+            return new MultiSum(terms, size + 1, used);
+        }
+        Expression[] copy = grow(terms, size);
+        copy[size] = addend;
+        return new MultiSum(copy, size + 1);
+    }
+
+    @Override
+    public Expression times(int multiplier) {
+        return new Scaled(this, multiplier);
+    }
+
+    private static Expression[] grow(Expression[] terms, int size) {
+        Expression[] copy = new Expression[Math.max(INITIAL_CAPACITY, size * 2)];
+        System.arraycopy(terms, 0, copy, 0, size);
+        return copy;
+    }
+}
@@ -1,3 +0,0 @@
-package com.example.demo;
-
-public record Pair(String from, String to) { }
@@ -0,0 +1,36 @@
+package com.example.demo;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Totals a stream of positions without building a Sum tree. Each worker of a parallel stream
+// fills its own MoneyAccumulator, the accumulators are merged pairwise, and the target currency
+// conversion happens once per source currency at the very end.
+final class PortfolioAggregator {
+    private PortfolioAggregator() { }
+
+    static Money aggregate(Stream<? extends Expression> positions, Bank bank, String to) {
+        return totals(positions).reduce(bank.snapshot(), to);
+    }
+
+    static Money aggregate(Spliterator<? extends Expression> positions, Bank bank, String to) {
+        return aggregate(StreamSupport.stream(positions, true), bank, to);
+    }
+
+    static MoneyAccumulator totals(Stream<? extends Expression> positions) {
+        return positions.collect(MoneyAccumulator::new, PortfolioAggregator::add, MoneyAccumulator::addAll);
+    }
+
+    private static void add(MoneyAccumulator totals, Expression position) {
+        if (position instanceof Money m) {
+            totals.add(m);
+            return;
+        }
+        ReductionPlan plan = ExpressionCompiler.planOf(position);
+        if (plan.opaque().length > 0) {
+            throw new IllegalArgumentException("cannot aggregate " + position.getClass().getName());
+        }
+        for (int i = 0; i < plan.terms(); i++) totals.add(plan.currency(i), plan.amount(i));
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.demo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Feeds quote ticks into a Bank. Lines look like "EUR,USD,1.0873" with an optional fourth
+// epoch-millis column; a file, a socket stream or a StringReader all work as the source.
+// Readers block when the bounded queue is full, and one applier thread coalesces ticks per pair
+// within a window and publishes each window as a single rate version. A window the Bank or one
+// of its listeners rejects is counted and logged, and the applier moves on to the next one.
+public class RateFeed implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RateFeed.class);
+    private static final Tick STOP = new Tick(-1, -1, 0, 0);
+    private static final long OFFER_MILLIS = 100;
+
+    private final Bank bank;
+    private final BlockingQueue<Tick> queue;
+    private final long windowNanos;
+    private final Clock clock;
+    private final Thread applier;
+    private final Map<Long, Long> lastApplied = new HashMap<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public RateFeed(Bank bank, int queueCapacity, Duration window) {
+        this(bank, queueCapacity, window, Clock.systemUTC());
+    }
+
+    RateFeed(Bank bank, int queueCapacity, Duration window, Clock clock) {
+        this.bank = bank;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.windowNanos = window.toNanos();
+        this.clock = clock;
+        this.applier = new Thread(this::applyLoop, "rate-feed");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    // Reads until end of stream; blocks while the applier is behind.
+    void ingest(Reader source) throws IOException, InterruptedException {
+        BufferedReader lines = source instanceof BufferedReader b ? b : new BufferedReader(source);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) continue;
+            received.incrementAndGet();
+            Tick tick = parse(line);
+            if (tick == null) {
+                dropped.incrementAndGet();
+            } else {
+                enqueue(tick);
+            }
+        }
+    }
+
+    void ingest(Path file) throws IOException, InterruptedException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ingest(reader);
+        }
+    }
+
+    Metrics metrics() {
+        return new Metrics(received.get(), merged.get(), dropped.get(), batches.get(), failedBatches.get(),
+                lastLagMillis.get(), maxLagMillis.get(), queue.size());
+    }
+
+    // Applies everything already queued, then stops the applier. If the caller is interrupted
+    // while waiting, close returns early with the interrupt flag set; a queued STOP still ends
+    // the applier once it has drained the ticks ahead of it.
+    @Override
+    public void close() {
+        try {
+            while (!queue.offer(STOP, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                // nothing will drain a full queue once the applier is gone
+                if (!applier.isAlive()) return;
+            }
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record Metrics(long received, long merged, long dropped, long batches, long failedBatches,
+                   long lastLagMillis, long maxLagMillis, int queued) { }
+
+    private void enqueue(Tick tick) throws InterruptedException {
+        while (!queue.offer(tick, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!applier.isAlive()) throw new IllegalStateException("rate feed applier has stopped");
+        }
+    }
+
+    private record Tick(int from, int to, long scaledRate, long epochMillis) {
+        long pair() {
+            return (long) from << 32 | to;
+        }
+    }
+
+    private Tick parse(String line) {
+        String[] fields = line.split(",");
+        if (fields.length < 3 || fields.length > 4) return null;
+        try {
+            long rate = FixedPoint.toScaledRate(new BigDecimal(fields[2].trim()));
+            long at = fields.length == 4 ? Long.parseLong(fields[3].trim()) : clock.millis();
+            return new Tick(Currencies.register(fields[0].trim()), Currencies.register(fields[1].trim()), rate, at);
+        } catch (IllegalArgumentException | ArithmeticException malformed) {
+            return null;
+        }
+    }
+
+    private void applyLoop() {
+        Map<Long, Tick> window = new LinkedHashMap<>();
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Tick first = queue.take();
+                if (first == STOP) break;
+                add(window, first);
+                long deadline = System.nanoTime() + windowNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Tick next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    add(window, next);
+                }
+                try {
+                    apply(window);
+                } catch (RuntimeException e) {
+                    failedBatches.incrementAndGet();
+                    log.warn("rate feed dropped a window of {} quotes", window.size(), e);
+                } finally {
+                    window.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void add(Map<Long, Tick> window, Tick tick) {
+        Long applied = lastApplied.get(tick.pair());
+        if (applied != null && applied > tick.epochMillis()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Tick previous = window.get(tick.pair());
+        if (previous != null) {
+            merged.incrementAndGet();
+            if (previous.epochMillis() > tick.epochMillis()) return;
+        }
+        window.put(tick.pair(), tick);
+    }
+
+    private void apply(Map<Long, Tick> window) {
+        if (window.isEmpty()) return;
+        int n = window.size();
+        int[] from = new int[n];
+        int[] to = new int[n];
+        long[] rates = new long[n];
+        long oldest = Long.MAX_VALUE;
+        int i = 0;
+        for (Tick tick : window.values()) {
+            from[i] = tick.from();
+            to[i] = tick.to();
+            rates[i] = tick.scaledRate();
+            oldest = Math.min(oldest, tick.epochMillis());
+            i++;
+        }
+        bank.addRates(from, to, rates);
+        // only after the Bank took them, so a rejected window does not shadow later ticks
+        for (Tick tick : window.values()) lastApplied.put(tick.pair(), tick.epochMillis());
+        long lag = Math.max(0, clock.millis() - oldest);
+        lastLagMillis.set(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        batches.incrementAndGet();
+    }
+}
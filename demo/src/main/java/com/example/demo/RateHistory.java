@@ -0,0 +1,161 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Historical quotes per pair as parallel sorted arrays of (epochMillis, scaled rate).
+// Appends in time order write past the end of the shared arrays, so published Series views never
+// see a change; anything else (back-filling, overwriting a timestamp) copies the arrays first.
+// The set of rates in force only changes at a quote's timestamp, so as-of tables are memoized per
+// change time: every instant between two changes shares one table and its cross-rate cache. A
+// quote at t can only alter tables from t on, so only those are dropped.
+// Every built table gets its own negative version. Live tables count up from 0, so version-keyed
+// consumers such as ReductionCache never take an as-of table for a live one or for another instant.
+final class RateHistory {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_TABLES = 64;
+    private static final AtomicLong AS_OF_VERSIONS = new AtomicLong();
+
+    private final Map<Long, Series> series;
+    private final NavigableSet<Long> changes;
+    // snapshots share Series arrays with the live history, so an append there would overwrite
+    // the live history's next point
+    private final boolean readOnly;
+    private final ConcurrentSkipListMap<Long, RateTable> tables = new ConcurrentSkipListMap<>();
+    private volatile long modifications;
+
+    RateHistory() {
+        this(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>(), false);
+    }
+
+    private RateHistory(Map<Long, Series> series, NavigableSet<Long> changes, boolean readOnly) {
+        this.series = series;
+        this.changes = changes;
+        this.readOnly = readOnly;
+    }
+
+    synchronized void add(int from, int to, long epochMillis, long scaledRate) {
+        if (readOnly) throw new UnsupportedOperationException("rate history snapshot is read-only");
+        long pair = pair(from, to);
+        Series current = series.get(pair);
+        Series next = current == null ? Series.of(epochMillis, scaledRate) : current.with(epochMillis, scaledRate);
+        if (next == current) return;
+        series.put(pair, next);
+        changes.add(epochMillis);
+        modifications++;
+        tables.tailMap(epochMillis, true).clear();
+    }
+
+    // Rate in force at epochMillis, 0 if the pair had no quote yet.
+    long rateAt(int from, int to, long epochMillis) {
+        Series s = series.get(pair(from, to));
+        return s == null ? 0 : s.at(epochMillis);
+    }
+
+    // Every pair's rate at one instant, as a table usable by a read-only Bank.
+    RateTable tableAt(long epochMillis) {
+        Long change = changes.floor(epochMillis);
+        if (change == null) return RateTable.EMPTY;
+        RateTable table = tables.get(change);
+        if (table != null) return table;
+        long seen = modifications;
+        table = build(change);
+        tables.put(change, table);
+        // an add that raced with the build may have made it stale
+        if (modifications != seen) tables.remove(change, table);
+        while (tables.size() > MAX_TABLES) tables.pollFirstEntry();
+        return table;
+    }
+
+    private RateTable build(long epochMillis) {
+        int n = 0;
+        int[] from = new int[series.size()];
+        int[] to = new int[from.length];
+        long[] rates = new long[from.length];
+        for (Map.Entry<Long, Series> e : series.entrySet()) {
+            long rate = e.getValue().at(epochMillis);
+            if (rate == 0 || n == from.length) continue;
+            from[n] = (int) (e.getKey() >>> 32);
+            to[n] = (int) (long) e.getKey();
+            rates[n++] = rate;
+        }
+        return RateTable.EMPTY.withAll(Arrays.copyOf(from, n), Arrays.copyOf(to, n), Arrays.copyOf(rates, n))
+                .withVersion(-AS_OF_VERSIONS.incrementAndGet());
+    }
+
+    // Frozen, read-only copy; later adds to this history do not show up in it.
+    synchronized RateHistory snapshot() {
+        return readOnly ? this : new RateHistory(Map.copyOf(series), new ConcurrentSkipListSet<>(changes), true);
+    }
+
+    int points(int from, int to) {
+        Series s = series.get(pair(from, to));
+        return s == null ? 0 : s.size;
+    }
+
+    private static long pair(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    private static final class Series {
+        final long[] times;
+        final long[] rates;
+        final int size;
+
+        private Series(long[] times, long[] rates, int size) {
+            this.times = times;
+            this.rates = rates;
+            this.size = size;
+        }
+
+        static Series of(long time, long rate) {
+            long[] times = new long[INITIAL_CAPACITY];
+            long[] rates = new long[INITIAL_CAPACITY];
+            times[0] = time;
+            rates[0] = rate;
+            return new Series(times, rates, 1);
+        }
+
+        long at(long time) {
+            int i = Arrays.binarySearch(times, 0, size, time);
+            if (i < 0) i = -i - 2;
+            return i < 0 ? 0 : rates[i];
+        }
+
+        Series with(long time, long rate) {
+            long last = times[size - 1];
+            if (time > last) {
+                // same rate as the latest point changes no as-of answer
+                if (rates[size - 1] == rate) return this;
+                if (size < times.length) {
+                    times[size] = time;
+                    rates[size] = rate;
+                    return new Series(times, rates, size + 1);
+                }
+                long[] t = Arrays.copyOf(times, size * 2);
+                long[] r = Arrays.copyOf(rates, size * 2);
+                t[size] = time;
+                r[size] = rate;
+                return new Series(t, r, size + 1);
+            }
+            int i = Arrays.binarySearch(times, 0, size, time);
+            long[] t = Arrays.copyOf(times, Math.max(INITIAL_CAPACITY, size + 1));
+            long[] r = Arrays.copyOf(rates, t.length);
+            if (i >= 0) {
+                r[i] = rate;
+                return new Series(t, r, size);
+            }
+            int at = -i - 1;
+            System.arraycopy(times, at, t, at + 1, size - at);
+            System.arraycopy(rates, at, r, at + 1, size - at);
+            t[at] = time;
+            r[at] = rate;
+            return new Series(t, r, size + 1);
+        }
+    }
+}
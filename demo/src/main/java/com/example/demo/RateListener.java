@@ -0,0 +1,7 @@
+package com.example.demo;
+
+// Told which quotes changed (from[i] -> to[i]); rates is a read-only view of the new rates.
+@FunctionalInterface
+interface RateListener {
+    void ratesChanged(Bank rates, int[] from, int[] to);
+}
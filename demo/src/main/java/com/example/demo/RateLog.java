@@ -0,0 +1,233 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// Ordered, append-only file of rate quotes shared by the nodes of a ReplicatedBank group:
+//   header   magic "RLOG", format version, record size                 (16 bytes)
+//   record   long scaled rate, int from, int to, int flags, int crc32  (24 bytes)
+// A record's offset is its index and the log's offset is its record count. Quotes appended
+// together end with a BATCH_END flag and are only read back as a whole batch. Currencies are
+// packed ISO codes, as in LedgerStore. Appends hold an in-process lock and then a file lock, so
+// nodes in one JVM and in separate processes can share a file.
+// Anything a writer left behind the last whole, checksummed batch is from a crash: a torn batch,
+// or a record the disk never got. Opening the log and every append first cut the file back to
+// that batch, under the lock, so such records are neither merged into the next batch nor left
+// in front of readers for good. A bad record in front of a whole batch is not a crash but
+// damage to quotes nodes may already have applied; cutting there would make them diverge, so
+// opening or appending fails instead.
+final class RateLog implements AutoCloseable {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 24;
+    static final int MAGIC = 0x524C4F47; // "RLOG"
+    static final int FORMAT_VERSION = 1;
+    static final int MAX_BATCH = 4096;
+
+    private static final int BATCH_END = 1;
+    private static final int CHECKED_BYTES = 20;
+    private static final int CRC_OFFSET = 20;
+    // FileLock is per process, so writers in one JVM also need to exclude each other; an entry
+    // lives as long as some open log uses its file
+    static final Map<Path, AppendLock> APPEND_LOCKS = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final Path key;
+    private final AppendLock appendLock;
+    private boolean closed;
+    // offset up to which this instance has already checked the log, guarded by appendLock
+    private long checkedEnd;
+
+    static RateLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Path key = file.toAbsolutePath().normalize();
+        AppendLock appendLock = APPEND_LOCKS.compute(key, (k, lock) -> (lock == null ? new AppendLock() : lock).acquire());
+        try {
+            return new RateLog(channel, key, appendLock);
+        } catch (IOException | RuntimeException e) {
+            release(key);
+            channel.close();
+            throw e;
+        }
+    }
+
+    private RateLog(FileChannel channel, Path key, AppendLock appendLock) throws IOException {
+        this.channel = channel;
+        this.key = key;
+        this.appendLock = appendLock;
+        synchronized (appendLock) {
+            FileLock lock = channel.lock();
+            try (lock) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                if (channel.size() == 0) {
+                    header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(8, RECORD_BYTES);
+                    writeFully(header, 0);
+                    channel.force(false);
+                } else {
+                    readFully(header, 0);
+                    if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != RECORD_BYTES) {
+                        throw new IOException("not a rate log or unsupported version");
+                    }
+                    committedEnd();
+                }
+            }
+        }
+    }
+
+    // Appends the quotes as one batch and returns the log offset just past it.
+    long append(int[] from, int[] to, long[] scaledRates) throws IOException {
+        int n = from.length;
+        if (n == 0 || n > MAX_BATCH) throw new IllegalArgumentException("batch must hold 1 to " + MAX_BATCH + " quotes");
+        if (to.length != n || scaledRates.length != n) throw new IllegalArgumentException("quote arrays differ in length");
+        ByteBuffer records = ByteBuffer.allocate(n * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+            int offset = i * RECORD_BYTES;
+            records.putLong(offset, scaledRates[i]);
+            records.putInt(offset + 8, LedgerStore.packCode(Currencies.code(from[i])));
+            records.putInt(offset + 12, LedgerStore.packCode(Currencies.code(to[i])));
+            records.putInt(offset + 16, i == n - 1 ? BATCH_END : 0);
+            records.putInt(offset + CRC_OFFSET, checksum(records, offset));
+        }
+        synchronized (appendLock) {
+            FileLock lock = channel.lock();
+            try (lock) {
+                long end = committedEnd();
+                writeFully(records, HEADER_BYTES + end * RECORD_BYTES);
+                checkedEnd = end + n;
+                return checkedEnd;
+            }
+        }
+    }
+
+    // Offset just past the last whole batch, with the file truncated there. Fails if a record in
+    // front of that batch is bad. Caller holds both locks.
+    private long committedEnd() throws IOException {
+        long records = size();
+        // another node cut the log back below what this one had checked
+        if (checkedEnd > records) checkedEnd = 0;
+        ByteBuffer chunk = ByteBuffer.allocate(MAX_BATCH * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long end = checkedEnd;
+        long firstBad = -1;
+        long offset = checkedEnd;
+        while (offset < records) {
+            int n = (int) Math.min(MAX_BATCH, records - offset);
+            chunk.clear().limit(n * RECORD_BYTES);
+            readFully(chunk, HEADER_BYTES + offset * RECORD_BYTES);
+            for (int i = 0; i < n; i++) {
+                int at = i * RECORD_BYTES;
+                if (chunk.getInt(at + CRC_OFFSET) != checksum(chunk, at)) {
+                    if (firstBad < 0) firstBad = offset + i;
+                } else if ((chunk.getInt(at + 16) & BATCH_END) != 0) {
+                    end = offset + i + 1;
+                }
+            }
+            offset += n;
+        }
+        if (firstBad >= 0 && firstBad < end) {
+            throw new IOException("rate log record " + firstBad + " is corrupt but a whole batch follows it, up to offset " + end);
+        }
+        long bytes = HEADER_BYTES + end * RECORD_BYTES;
+        if (channel.size() > bytes) {
+            channel.truncate(bytes);
+            channel.force(true);
+        }
+        checkedEnd = end;
+        return end;
+    }
+
+    // Records whose bytes are all in the file; the last ones may still fail their checksum.
+    long size() throws IOException {
+        return Math.max(0, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+    }
+
+    // Reads whole batches from offset, at most max records. Stops before a batch that is not
+    // completely written yet, so a reader can never apply half of one.
+    Batch read(long offset, int max) throws IOException {
+        int n = (int) Math.min(max, size() - offset);
+        if (n <= 0) return Batch.EMPTY;
+        ByteBuffer records = ByteBuffer.allocate(n * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(records, HEADER_BYTES + offset * RECORD_BYTES);
+        int[] from = new int[n];
+        int[] to = new int[n];
+        long[] rates = new long[n];
+        int complete = 0;
+        for (int i = 0; i < n; i++) {
+            int at = i * RECORD_BYTES;
+            if (records.getInt(at + CRC_OFFSET) != checksum(records, at)) break;
+            rates[i] = records.getLong(at);
+            from[i] = Currencies.register(LedgerStore.unpackCode(records.getInt(at + 8)));
+            to[i] = Currencies.register(LedgerStore.unpackCode(records.getInt(at + 12)));
+            if ((records.getInt(at + 16) & BATCH_END) != 0) complete = i + 1;
+        }
+        if (complete == 0) return Batch.EMPTY;
+        return new Batch(Arrays.copyOf(from, complete), Arrays.copyOf(to, complete), Arrays.copyOf(rates, complete));
+    }
+
+    // Makes appended quotes durable.
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        release(key);
+        channel.close();
+    }
+
+    private static void release(Path key) {
+        APPEND_LOCKS.computeIfPresent(key, (k, lock) -> lock.release() ? null : lock);
+    }
+
+    // Monitor shared by the open logs of one file, counting them so the last close drops it.
+    // Only changed inside APPEND_LOCKS.compute, which runs one update per key at a time.
+    static final class AppendLock {
+        private int users;
+
+        AppendLock acquire() {
+            users++;
+            return this;
+        }
+
+        // true when no open log uses the file any more
+        boolean release() {
+            return --users == 0;
+        }
+    }
+
+    record Batch(int[] from, int[] to, long[] scaledRates) {
+        static final Batch EMPTY = new Batch(new int[0], new int[0], new long[0]);
+
+        int size() {
+            return from.length;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("rate log truncated");
+        }
+    }
+
+    private static int checksum(ByteBuffer records, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(records.slice(offset, CHECKED_BYTES));
+        // the CRC32 of zero bytes is not zero, so space not yet written never reads as a quote
+        return (int) crc.getValue();
+    }
+}
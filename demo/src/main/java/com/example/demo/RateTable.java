@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import java.util.Arrays;
+
+// Immutable rate matrix, one row of quotes per source currency indexed by target; 0 means no
+// quote. The matrix only spans currencies that appear in a quote, not every registered one, and a
+// new table shares every row its quotes leave alone, so a change copies the rows it touches plus
+// one reference per currency. Missing pairs are derived through other currencies by CrossRates.
+final class RateTable {
+    static final RateTable EMPTY = new RateTable(new long[0][], 0, 0, new CrossRates(0));
+
+    // rows[from] is null when from quotes nothing, and may be shorter than size
+    private final long[][] rows;
+    private final int size;
+    private final long version;
+    private final CrossRates cross;
+
+    private RateTable(long[][] rows, int size, long version, CrossRates cross) {
+        this.rows = rows;
+        this.size = size;
+        this.version = version;
+        this.cross = cross;
+    }
+
+    RateTable with(int from, int to, long rate) {
+        return withAll(new int[] {from}, new int[] {to}, new long[] {rate});
+    }
+
+    // One new table for a whole batch of quotes, so readers see either none or all of them.
+    RateTable withAll(int[] from, int[] to, long[] quotes) {
+        int newSize = size;
+        boolean newEdge = false;
+        for (int i = 0; i < from.length; i++) {
+            newSize = Math.max(newSize, Math.max(from[i], to[i]) + 1);
+            newEdge |= get(from[i], to[i]) == 0 && get(to[i], from[i]) == 0;
+        }
+        long[][] copy = Arrays.copyOf(rows, newSize);
+        // each touched row is copied once per batch, wide enough for every quote it gets
+        boolean[] copied = new boolean[newSize];
+        for (int i = 0; i < from.length; i++) {
+            long[] row = copy[from[i]];
+            if (!copied[from[i]]) {
+                row = row == null ? new long[to[i] + 1] : Arrays.copyOf(row, Math.max(row.length, to[i] + 1));
+                copied[from[i]] = true;
+            } else if (row.length <= to[i]) {
+                row = Arrays.copyOf(row, to[i] + 1);
+            }
+            row[to[i]] = quotes[i];
+            copy[from[i]] = row;
+        }
+        return new RateTable(copy, newSize, version + 1, cross.after(from, to, newEdge, newSize));
+    }
+
+    // Same rates and cross-rate cache under another version, for tables outside the live sequence.
+    RateTable withVersion(long version) {
+        return new RateTable(rows, size, version, cross);
+    }
+
+    // Direct quote only, 0 if there is none.
+    long get(int from, int to) {
+        if (from >= size) return 0;
+        long[] row = rows[from];
+        return row == null || to >= row.length ? 0 : row[to];
+    }
+
+    // Direct quote, or a rate derived through other currencies; 0 if they are not connected.
+    long resolve(int from, int to) {
+        long direct = get(from, to);
+        return direct != 0 ? direct : cross.get(this, from, to);
+    }
+
+    // Currencies joined to any of the given ones by a chain of quotes, in either direction; only
+    // rates between these can differ from the previous table's after a change to those quotes.
+    boolean[] connected(int[] from, int[] to) {
+        boolean[] seen = new boolean[size];
+        int[] queue = new int[size];
+        int tail = 0;
+        for (int i = 0; i < from.length; i++) {
+            for (int c : new int[] {from[i], to[i]}) {
+                if (c < size && !seen[c]) {
+                    seen[c] = true;
+                    queue[tail++] = c;
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int u = queue[head];
+            for (int v = 0; v < size; v++) {
+                if (!seen[v] && (get(u, v) != 0 || get(v, u) != 0)) {
+                    seen[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return seen;
+    }
+
+    long version() {
+        return version;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Bounded cache of reduce results in front of a Bank.
+// The key is the expression's reduction plan (one amount per currency, in canonical order, so
+// structurally equal expressions share an entry even when parsed afresh per request) plus the
+// target currency and the rate version the result was computed at. Building it costs one pass
+// over the plan's terms, not the tree. addRate bumps the version, so stale entries are simply
+// never asked for again and age out through eviction; nothing is scanned.
+// Keys are spread over independently locked stripes, so concurrent reduces only contend when
+// they land on the same one. Each stripe evicts W-TinyLFU style: new entries go into a small LRU
+// window; a candidate leaving the window only replaces the main region's LRU victim when a
+// count-min sketch says it has been requested more often, so one-off keys cannot flush out the
+// hot set. The sketch counts the plan and target without the version, so popularity carries
+// over a rate change; a victim computed at an older version always loses admission. As-of
+// banks work too: their tables carry versions of their own (see RateHistory).
+public class ReductionCache {
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_SIZE = 32;
+
+    private final Bank bank;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final Stripe[] stripes;
+
+    public ReductionCache(Bank bank, int maximumSize, Duration ttl) {
+        this(bank, maximumSize, ttl, System::nanoTime);
+    }
+
+    ReductionCache(Bank bank, int maximumSize, Duration ttl, LongSupplier ticker) {
+        if (maximumSize < 2) throw new IllegalArgumentException("maximumSize must be at least 2");
+        this.bank = bank;
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        int count = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, maximumSize / MIN_STRIPE_SIZE)));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) stripes[i] = new Stripe(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+    }
+
+    Money reduce(Expression source, String to) {
+        return reduce(bank.snapshot(), source, to);
+    }
+
+    // rates must be a snapshot of this cache's bank, so that its version names its rates
+    Money reduce(Bank rates, Expression source, String to) {
+        ReductionPlan plan = ExpressionCompiler.planOf(source);
+        // results of unknown expression types may depend on more than the rates
+        if (plan.opaque().length > 0) return plan.reduce(rates, to);
+        Key key = new Key(plan, Currencies.find(to), rates.version());
+        Stripe stripe = stripes[spread(key.shape) & (stripes.length - 1)];
+        long now = ticker.getAsLong();
+        Money cached = stripe.lookup(key, now);
+        if (cached != null) return cached;
+        Money result = plan.reduce(rates, to);
+        stripe.store(key, result, now, now + ttlNanos);
+        return result;
+    }
+
+    Stats stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long expirations = 0;
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+                misses += stripe.misses;
+                evictions += stripe.evictions;
+                expirations += stripe.expirations;
+                size += stripe.window.size() + stripe.main.size();
+            }
+        }
+        return new Stats(hits, misses, evictions, expirations, size);
+    }
+
+    record Stats(long hits, long misses, long evictions, long expirations, int size) {
+        double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    // top bits of the remixed hash, so stripes do not follow the sketch's row indexes
+    private static int spread(int hash) {
+        return (hash ^ hash >>> 16) * 0x9E3779B9 >>> 28;
+    }
+
+    private static final class Stripe {
+        final int windowSize;
+        final int mainSize;
+        final LinkedHashMap<Key, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<Key, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+        final FrequencySketch sketch;
+        long hits;
+        long misses;
+        long evictions;
+        long expirations;
+
+        Stripe(int maximumSize) {
+            this.windowSize = Math.max(1, maximumSize / 100);
+            this.mainSize = Math.max(1, maximumSize - windowSize);
+            this.sketch = new FrequencySketch(maximumSize);
+        }
+
+        synchronized Money lookup(Key key, long now) {
+            sketch.increment(key.shape);
+            Entry e = window.get(key);
+            Map<Key, Entry> region = window;
+            if (e == null) {
+                e = main.get(key);
+                region = main;
+            }
+            if (e == null) {
+                misses++;
+                return null;
+            }
+            if (now - e.expiresAt >= 0) {
+                region.remove(key);
+                expirations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            return e.value;
+        }
+
+        synchronized void store(Key key, Money value, long now, long expiresAt) {
+            if (window.containsKey(key) || main.containsKey(key)) return;
+            window.put(key, new Entry(value, expiresAt));
+            if (window.size() <= windowSize) return;
+            Iterator<Map.Entry<Key, Entry>> oldest = window.entrySet().iterator();
+            Map.Entry<Key, Entry> candidate = oldest.next();
+            oldest.remove();
+            if (main.size() < mainSize) {
+                main.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            Iterator<Map.Entry<Key, Entry>> lru = main.entrySet().iterator();
+            Map.Entry<Key, Entry> victim = lru.next();
+            // victims from an older live rate version are dead, whatever their count; as-of
+            // tables (negative versions) are not superseded, so they compete on frequency
+            long victimVersion = victim.getKey().version;
+            boolean superseded = victimVersion >= 0 && victimVersion < candidate.getKey().version;
+            if (!superseded
+                    && now - victim.getValue().expiresAt < 0
+                    && sketch.frequency(candidate.getKey().shape) <= sketch.frequency(victim.getKey().shape)) {
+                evictions++;
+                return;
+            }
+            lru.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+            evictions++;
+        }
+    }
+
+    private record Entry(Money value, long expiresAt) { }
+
+    private static final class Key {
+        final int[] currencies;
+        final long[] amounts;
+        final int to;
+        final long version;
+        // plan and target only; what the sketch counts
+        final int shape;
+        final int hash;
+
+        Key(ReductionPlan plan, int to, long version) {
+            // canonical order, so term order in the tree does not matter
+            int n = plan.terms();
+            long[] pairs = new long[n];
+            for (int i = 0; i < n; i++) pairs[i] = (long) plan.currency(i) << 32 | i;
+            Arrays.sort(pairs);
+            currencies = new int[n];
+            amounts = new long[n];
+            for (int i = 0; i < n; i++) {
+                int term = (int) pairs[i];
+                currencies[i] = plan.currency(term);
+                amounts[i] = plan.amount(term);
+            }
+            this.to = to;
+            this.version = version;
+            this.shape = 31 * (31 * Arrays.hashCode(currencies) + Arrays.hashCode(amounts)) + to;
+            this.hash = 31 * shape + Long.hashCode(version);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && hash == k.hash && to == k.to && version == k.version
+                    && Arrays.equals(currencies, k.currencies) && Arrays.equals(amounts, k.amounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Count-min sketch of 4-bit counters, four rows packed into longs. All counters are halved
+    // after sampleSize increments so old popularity fades.
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+            table = new long[length];
+            mask = length - 1;
+            sampleSize = 10 * Math.max(16, maximumSize);
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < 4; row++) {
+                int index = index(hash, row);
+                int shift = counterShift(hash, row);
+                if ((table[index] >>> shift & 0xF) < 15) table[index] += 1L << shift;
+            }
+            if (++additions >= sampleSize) halve();
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                min = Math.min(min, (int) (table[index(hash, row)] >>> counterShift(hash, row) & 0xF));
+            }
+            return min;
+        }
+
+        private void halve() {
+            for (int i = 0; i < table.length; i++) table[i] = table[i] >>> 1 & 0x7777777777777777L;
+            additions /= 2;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h >>> 32) & mask;
+        }
+
+        // each row uses its own four of the sixteen counters in a long
+        private static int counterShift(int hash, int row) {
+            return ((hash >>> (row * 8) & 3) + row * 4) << 2;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo;
+
+// Compiled form of an expression: one amount per source currency. Reducing it is a dot product
+// of the amounts with the bank's current rates, so a cached plan stays valid when rates change.
+final class ReductionPlan {
+    private final int[] currencies;
+    private final long[] amounts;
+    private final Expression[] opaque;
+
+    ReductionPlan(int[] currencies, long[] amounts, Expression[] opaque) {
+        this.currencies = currencies;
+        this.amounts = amounts;
+        this.opaque = opaque;
+    }
+
+    int terms() {
+        return currencies.length;
+    }
+
+    int currency(int index) {
+        return currencies[index];
+    }
+
+    long amount(int index) {
+        return amounts[index];
+    }
+
+    Expression[] opaque() {
+        return opaque;
+    }
+
+    Money reduce(Bank bank, String to) {
+        int toId = Currencies.find(to);
+        long total = 0;
+        for (int i = 0; i < currencies.length; i++) {
+            total = Math.addExact(total, bank.convert(amounts[i], currencies[i], toId));
+        }
+        for (Expression e : opaque) total = Math.addExact(total, e.reduce(bank, to).amount);
+        return Money.valueOf(total, toId);
+    }
+}
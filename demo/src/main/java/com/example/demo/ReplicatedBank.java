@@ -0,0 +1,136 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// One node of a group of Banks kept in step through a shared RateLog. Rate writes go to the log,
+// never straight to the local Bank; every node, the writer included, applies the log in order,
+// so all nodes see the same sequence of quotes. A tailer thread polls the log and applies the
+// whole batches it finds, up to RateLog.MAX_BATCH * 16 quotes per rate version.
+// appliedOffset() is the log offset the node's reads reflect. A write returns the offset just
+// past it; handing that to snapshot(minOffset) on any node gives read-your-writes, catching the
+// node up from the log first when its tailer has not got there yet.
+// A node replays the log when it opens. If the log later turns out shorter than what the node
+// has applied, the file was cut or replaced under it and its rates no longer match any prefix
+// of the log; the tailer stops and every read fails from then on.
+public class ReplicatedBank implements AutoCloseable {
+    private static final int READ_RECORDS = 16 * RateLog.MAX_BATCH;
+
+    private final RateLog log;
+    private final Bank bank = new Bank();
+    private final long pollNanos;
+    private final Thread tailer;
+    private final Object applyLock = new Object();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long appliedOffset;
+    private volatile boolean diverged;
+    private volatile boolean running = true;
+
+    public static ReplicatedBank open(Path log, Duration pollInterval) throws IOException {
+        RateLog rates = RateLog.open(log);
+        try {
+            return new ReplicatedBank(rates, pollInterval);
+        } catch (IOException | RuntimeException e) {
+            rates.close();
+            throw e;
+        }
+    }
+
+    private ReplicatedBank(RateLog log, Duration pollInterval) throws IOException {
+        this.log = log;
+        this.pollNanos = pollInterval.toNanos();
+        catchUp();
+        this.tailer = new Thread(this::tail, "rate-log-tailer");
+        this.tailer.setDaemon(true);
+        this.tailer.start();
+    }
+
+    // Returns the log offset just past this quote.
+    long addRate(String from, String to, BigDecimal rate) throws IOException {
+        return addRates(new int[] {Currencies.register(from)}, new int[] {Currencies.register(to)}, new long[] {FixedPoint.toScaledRate(rate)});
+    }
+
+    // Logs the quotes as one batch, applied by every node as part of a single rate version.
+    long addRates(int[] from, int[] to, long[] scaledRates) throws IOException {
+        return log.append(from, to, scaledRates);
+    }
+
+    long appliedOffset() {
+        return appliedOffset;
+    }
+
+    long appliedBatches() {
+        return batches.get();
+    }
+
+    // Read-only rates reflecting at least minOffset; 0 takes whatever the node has applied.
+    Bank snapshot(long minOffset) throws IOException {
+        if (diverged || appliedOffset < minOffset) catchUp();
+        if (appliedOffset < minOffset) {
+            throw new IllegalStateException("log offset " + minOffset + " not written yet, log ends at " + appliedOffset);
+        }
+        return bank.snapshot();
+    }
+
+    Money reduce(Expression source, String to, long minOffset) throws IOException {
+        return source.reduce(snapshot(minOffset), to);
+    }
+
+    // Listeners see each applied batch, in log order.
+    void subscribe(RateListener listener) {
+        bank.subscribe(listener);
+    }
+
+    // Applies every whole batch now in the log and returns the offset reached.
+    long catchUp() throws IOException {
+        synchronized (applyLock) {
+            while (true) {
+                if (diverged) throw new IllegalStateException("rate log was cut back below offset " + appliedOffset + " applied by this node");
+                RateLog.Batch batch = log.read(appliedOffset, READ_RECORDS);
+                if (batch.size() == 0) {
+                    // a read past the end looks like an empty one, so check the length itself
+                    if (log.size() < appliedOffset) {
+                        diverged = true;
+                        continue;
+                    }
+                    return appliedOffset;
+                }
+                bank.addRates(batch.from(), batch.to(), batch.scaledRates());
+                // rates first, so a reader that sees the offset also sees what it covers
+                appliedOffset += batch.size();
+                batches.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        LockSupport.unpark(tailer);
+        tailer.join();
+        log.force();
+        log.close();
+    }
+
+    private void tail() {
+        while (running) {
+            LockSupport.parkNanos(pollNanos);
+            if (!running) return;
+            try {
+                catchUp();
+            } catch (ClosedChannelException closed) {
+                return;
+            } catch (IOException e) {
+                // retried on the next poll; snapshot(minOffset) surfaces persistent failures
+            } catch (IllegalStateException cutBack) {
+                // nothing left to follow; snapshot() reports it to readers
+                return;
+            }
+        }
+    }
+}
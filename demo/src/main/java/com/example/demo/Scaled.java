@@ -0,0 +1,41 @@
+package com.example.demo;
+
+// expression * multiplier without copying the tree; nested times calls fold into one multiplier.
+public class Scaled implements Expression {
+    final Expression expression;
+    final int multiplier;
+    private volatile ReductionPlan plan;
+
+    Scaled(Expression expression, int multiplier) {
+        this.expression = expression;
+        this.multiplier = multiplier;
+    }
+
+    ReductionPlan cachedPlan() {
+        return plan;
+    }
+
+    ReductionPlan plan() {
+        ReductionPlan p = plan;
+        if (p == null) {
+            p = ExpressionCompiler.compile(this);
+            plan = p;
+        }
+        return p;
+    }
+
+    @Override
+    public Money reduce(Bank bank, String to) {
+        return plan().reduce(bank, to);
+    }
+
+    @Override
+    public Expression plus(Expression addend) {
+        return new MultiSum(this, addend);
+    }
+
+    @Override
+    public Expression times(int multiplier) {
+        return new Scaled(expression, Math.multiplyExact(this.multiplier, multiplier));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+// With conversion.startup-probe=true the application performs one conversion over HTTP as soon
+// as it is ready, prints the JVM uptime at that point and exits. The conversion is read-only
+// (USD into USD), so probing an instance that shares its rates never changes them.
+// The bean is only registered with the property set. AOT-processed builds fix their conditions
+// at build time, so processAot runs with the property on and the listener checks it again here.
+class StartupProbe implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        if (!environment.getProperty("conversion.startup-probe", Boolean.class, false)) return;
+        long ready = ManagementFactory.getRuntimeMXBean().getUptime();
+        int status;
+        try {
+            ConversionServer server = event.getApplicationContext().getBean(ConversionServer.class);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String base = "http://localhost:" + server.port();
+            HttpResponse<String> reply = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce?to=USD"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":\"10\",\"currency\":\"USD\"}")).build(), HttpResponse.BodyHandlers.ofString());
+            long converted = ManagementFactory.getRuntimeMXBean().getUptime();
+            System.out.printf("startup: context ready %d ms, first conversion %d ms -> %s%n", ready, converted, reply.body());
+            status = reply.statusCode() == 200 ? 0 : 1;
+        } catch (Exception e) {
+            System.out.println("startup probe failed: " + e);
+            status = 1;
+        }
+        int exitCode = status;
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> exitCode));
+    }
+}
@@ -5,22 +5,35 @@ public class Sum implements Expression {
         this.augend = augend;
         this.addend = addend;
     }
-    Expression augend;
-    Expression addend;
+    final Expression augend;
+    final Expression addend;
+    private volatile ReductionPlan plan;
+
+    ReductionPlan cachedPlan() {
+        return plan;
+    }
+
+    ReductionPlan plan() {
+        ReductionPlan p = plan;
+        if (p == null) {
+            p = ExpressionCompiler.compile(this);
+            plan = p;
+        }
+        return p;
+    }
 
     @Override
     public Money reduce(Bank bank, String to) {
-        int amount = augend.reduce(bank, to).amount + addend.reduce(bank, to).amount;
-        return new Money(amount, to);
+        return plan().reduce(bank, to);
     }
 
     @Override
     public Expression plus(Expression addend) {
-        return new Sum(this, addend);
+        return new MultiSum(this, addend);
     }
 
     @Override
     public Expression times(int multiplier) {
-        return new Sum(augend.times(multiplier), addend.times(multiplier));
+        return new Scaled(this, multiplier);
     }
 }
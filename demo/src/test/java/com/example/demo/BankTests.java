@@ -0,0 +1,436 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankTests {
+
+	@Test
+	void testSnapshotIgnoresLaterRateChanges() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Bank snapshot = bank.snapshot();
+		bank.addRate("CHF", "USD", 4);
+		assertEquals(BigDecimal.valueOf(2), snapshot.rate("CHF", "USD"));
+		assertEquals(BigDecimal.valueOf(4), bank.rate("CHF", "USD"));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.addRate("CHF", "USD", 1));
+	}
+
+	@Test
+	void testReduceSeesOneRateSetWhileRatesChange() throws InterruptedException {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 1);
+		Thread feed = new Thread(() -> {
+			for (int i = 0; i < 20_000; i++) {
+				bank.addRate("CHF", "USD", i % 2 == 0 ? 2 : 1);
+			}
+		});
+		feed.start();
+		Expression portfolio = Money.franc(4).plus(Money.franc(4));
+		while (feed.isAlive()) {
+			Money result = bank.reduce(portfolio, "USD");
+			assertTrue(result.equals(Money.dollar(8)) || result.equals(Money.dollar(4)), result.toString());
+		}
+		feed.join();
+	}
+
+	@Test
+	void testRateLookupByIdAndMissingRate() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		bank.addRate("JPY", "USD", 150);
+		assertEquals(2 * FixedPoint.RATE_SCALE, bank.scaledRate(Currencies.CHF, Currencies.USD));
+		assertEquals(BigDecimal.valueOf(150), bank.rate("JPY", "USD"));
+		assertThrows(IllegalArgumentException.class, () -> bank.rate("USD", "KRW"));
+	}
+
+	@Test
+	void testFractionalRateWithRounding() {
+		Bank bank = new Bank();
+		bank.addRate("EUR", "USD", new BigDecimal("1.0873"));
+		Money result = bank.reduce(Money.of(new BigDecimal("100.00"), "EUR"), "USD");
+		assertEquals(Money.of(new BigDecimal("91.97"), "USD"), result);
+	}
+
+	@Test
+	void testRoundingModeIsConfigurable() {
+		Money halfCent = new Money(1, Currencies.CHF);
+		Bank halfEven = new Bank(RoundingMode.HALF_EVEN);
+		Bank halfUp = new Bank(RoundingMode.HALF_UP);
+		halfEven.addRate("CHF", "USD", 2);
+		halfUp.addRate("CHF", "USD", 2);
+		assertEquals(0, halfEven.reduce(halfCent, "USD").amount);
+		assertEquals(1, halfUp.reduce(halfCent, "USD").amount);
+		assertEquals(-1, halfUp.reduce(new Money(-1, Currencies.CHF), "USD").amount);
+	}
+
+	@Test
+	void testOverflowFallsBackToExactArithmetic() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", new BigDecimal("0.5"));
+		Money huge = new Money(4_000_000_000_000_000_000L, Currencies.CHF);
+		assertEquals(8_000_000_000_000_000_000L, bank.reduce(huge, "USD").amount);
+		assertThrows(ArithmeticException.class, () -> huge.times(3));
+	}
+
+	@Test
+	void testBatchReduceReturnsSubtotalsAndTotal() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		long[] amounts = {500, 1000, 300};
+		int[] currencies = {Currencies.USD, Currencies.CHF, Currencies.USD};
+		BatchReduction result = bank.reduce(amounts, currencies, "USD");
+		assertEquals(Money.dollar(13), result.total());
+		assertEquals(800, result.subtotal("USD"));
+		assertEquals(1000, result.subtotal("CHF"));
+		assertEquals(500, result.converted("CHF"));
+	}
+
+	@Test
+	void testLargeBatchMatchesExpressionReduce() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		int n = BatchReduction.CHUNK_SIZE * 5 + 17;
+		long[] amounts = new long[n];
+		int[] currencies = new int[n];
+		Expression expr = new Money(0, Currencies.USD);
+		for (int i = 0; i < n; i++) {
+			amounts[i] = i % 1000;
+			currencies[i] = i % 3 == 0 ? Currencies.CHF : Currencies.USD;
+			expr = expr.plus(new Money(amounts[i], currencies[i]));
+		}
+		assertEquals(bank.reduce(expr, "USD"), bank.reduce(amounts, currencies, "USD").total());
+	}
+
+	@Test
+	void testBatchRejectsMismatchedColumns() {
+		Bank bank = new Bank();
+		assertThrows(IllegalArgumentException.class, () -> bank.reduce(new long[2], new int[1], "USD"));
+	}
+
+	@Test
+	void testBatchRejectsUnknownCurrencyIds() {
+		Bank bank = new Bank();
+		assertThrows(IllegalArgumentException.class, () -> bank.reduce(new long[] {1, 2}, new int[] {Currencies.USD, -1}, "USD"));
+		assertThrows(IllegalArgumentException.class,
+				() -> bank.reduce(new long[] {1}, new int[] {Currencies.count()}, "USD"));
+	}
+
+	@Test
+	void testCrossRateThroughPivotCurrency() {
+		Bank bank = new Bank();
+		bank.addRate("EUR", "USD", new BigDecimal("0.5"));
+		bank.addRate("USD", "CHF", 2);
+		assertEquals(BigDecimal.ONE, bank.rate("EUR", "CHF"));
+		assertEquals(new BigDecimal("0.5"), bank.rate("CHF", "USD"));
+		assertEquals(Money.franc(10), bank.reduce(Money.of(10, "EUR"), "CHF"));
+	}
+
+	@Test
+	void testCrossRateFollowsQuoteChanges() {
+		Bank bank = new Bank();
+		bank.addRate("EUR", "USD", new BigDecimal("0.5"));
+		bank.addRate("USD", "CHF", 2);
+		bank.addRate("GBP", "USD", new BigDecimal("0.25"));
+		assertEquals(BigDecimal.ONE, bank.rate("EUR", "CHF"));
+		assertEquals(new BigDecimal("0.5"), bank.rate("GBP", "CHF"));
+		bank.addRate("USD", "CHF", 4);
+		assertEquals(new BigDecimal("2"), bank.rate("EUR", "CHF"));
+		assertEquals(BigDecimal.ONE, bank.rate("GBP", "CHF"));
+		bank.addRate("EUR", "GBP", 3);
+		assertEquals(new BigDecimal("3"), bank.rate("EUR", "GBP"));
+		assertEquals(new BigDecimal("0.333333333"), bank.rate("GBP", "EUR"));
+	}
+
+	@Test
+	void testRateTableLeavesEarlierTablesAloneWhenRowsAreShared() {
+		int eur = Currencies.register("EUR");
+		RateTable first = RateTable.EMPTY.withAll(new int[] {Currencies.CHF, eur}, new int[] {Currencies.USD, Currencies.USD},
+				new long[] {2 * FixedPoint.RATE_SCALE, 4 * FixedPoint.RATE_SCALE});
+		// 같은 행에 두 호가가 들어오고 행이 넓어져도 이전 표의 행은 그대로여야 한다
+		RateTable second = first.withAll(new int[] {Currencies.CHF, Currencies.CHF}, new int[] {Currencies.USD, eur},
+				new long[] {3 * FixedPoint.RATE_SCALE, 5 * FixedPoint.RATE_SCALE});
+		assertEquals(2 * FixedPoint.RATE_SCALE, first.get(Currencies.CHF, Currencies.USD));
+		assertEquals(0, first.get(Currencies.CHF, eur));
+		assertEquals(3 * FixedPoint.RATE_SCALE, second.get(Currencies.CHF, Currencies.USD));
+		assertEquals(5 * FixedPoint.RATE_SCALE, second.get(Currencies.CHF, eur));
+		assertEquals(4 * FixedPoint.RATE_SCALE, second.get(eur, Currencies.USD));
+
+		// 호가 없이 등록만 된 통화는 표를 키우지 않고, 없는 환율로 보인다
+		int unquoted = Currencies.register("SEK");
+		assertEquals(0, second.get(unquoted, Currencies.USD));
+		assertEquals(0, second.resolve(Currencies.USD, unquoted));
+		RateTable third = second.with(unquoted, eur, 7);
+		assertEquals(7, third.get(unquoted, eur));
+		assertEquals(5 * FixedPoint.RATE_SCALE, third.get(Currencies.CHF, eur));
+		assertEquals(0, second.get(unquoted, eur));
+	}
+
+	@Test
+	void testUnconnectedCurrenciesHaveNoRate() {
+		Bank bank = new Bank();
+		bank.addRate("EUR", "USD", 2);
+		bank.addRate("JPY", "KRW", 10);
+		assertThrows(IllegalArgumentException.class, () -> bank.rate("EUR", "KRW"));
+	}
+
+	@Test
+	void testRateFeedCoalescesTicksPerPair() throws Exception {
+		Bank bank = new Bank();
+		Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000), ZoneOffset.UTC);
+		String ticks = """
+				CHF,USD,1.5,900
+				CHF,USD,2,950
+				EUR,USD,0.5,960
+				not a tick
+				CHF,USD,1.8,940
+				""";
+		try (RateFeed feed = new RateFeed(bank, 16, Duration.ofSeconds(5), clock)) {
+			feed.ingest(new StringReader(ticks));
+		}
+		assertEquals(new BigDecimal("2"), bank.rate("CHF", "USD"));
+		assertEquals(new BigDecimal("0.5"), bank.rate("EUR", "USD"));
+		assertEquals(1, bank.version());
+	}
+
+	@Test
+	void testRateFeedMetrics() throws Exception {
+		Bank bank = new Bank();
+		Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000), ZoneOffset.UTC);
+		RateFeed feed = new RateFeed(bank, 16, Duration.ofSeconds(5), clock);
+		feed.ingest(new StringReader("CHF,USD,1.5,900\nCHF,USD,2,950\nCHF,USD\n"));
+		feed.close();
+		RateFeed.Metrics metrics = feed.metrics();
+		assertEquals(3, metrics.received());
+		assertEquals(1, metrics.merged());
+		assertEquals(1, metrics.dropped());
+		assertEquals(1, metrics.batches());
+		assertEquals(50, metrics.maxLagMillis());
+	}
+
+	@Test
+	void testRateFeedSurvivesAListenerThatThrows() throws Exception {
+		Bank bank = new Bank();
+		bank.subscribe((rates, from, to) -> {
+			if (rates.rate("CHF", "USD").intValue() % 2 == 0) throw new IllegalStateException("listener failed");
+		});
+		StringBuilder ticks = new StringBuilder();
+		for (int i = 1; i <= 100; i++) {
+			ticks.append("CHF,USD,").append(i).append(',').append(i).append('\n');
+		}
+		RateFeed feed = new RateFeed(bank, 1, Duration.ZERO);
+		feed.ingest(new StringReader(ticks.toString()));
+		feed.close();
+		assertEquals(BigDecimal.valueOf(100), bank.rate("CHF", "USD"));
+		assertTrue(feed.metrics().failedBatches() > 0);
+		assertEquals(feed.metrics().batches() + feed.metrics().failedBatches(), bank.version());
+	}
+
+	@Test
+	void testRateFeedAppliesEverythingThroughSmallQueue() throws Exception {
+		Bank bank = new Bank();
+		StringBuilder ticks = new StringBuilder();
+		for (int i = 1; i <= 10_000; i++) {
+			ticks.append("CHF,USD,").append(i).append(',').append(i).append('\n');
+		}
+		try (RateFeed feed = new RateFeed(bank, 1, Duration.ZERO)) {
+			feed.ingest(new StringReader(ticks.toString()));
+		}
+		assertEquals(BigDecimal.valueOf(10_000), bank.rate("CHF", "USD"));
+	}
+
+	@Test
+	void testRateFeedCloseKeepsTheCallersInterrupt() {
+		RateFeed feed = new RateFeed(new Bank(), 1, Duration.ZERO);
+		Thread.currentThread().interrupt();
+		feed.close();
+		assertTrue(Thread.interrupted());
+		feed.close();
+	}
+
+	@Test
+	void testReduceAsOfInstantUsesHistoricalRates() {
+		Bank bank = new Bank();
+		Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+		bank.addRate("CHF", "USD", new BigDecimal("2"), t0);
+		bank.addRate("CHF", "USD", new BigDecimal("4"), t0.plusSeconds(60));
+		bank.addRate("CHF", "USD", 5);
+		Expression sum = new Sum(Money.dollar(5), Money.franc(20));
+		assertEquals(Money.dollar(15), bank.reduce(sum, "USD", t0.plusSeconds(30)));
+		assertEquals(Money.dollar(10), bank.reduce(sum, "USD", t0.plusSeconds(60)));
+		assertEquals(Money.dollar(9), bank.reduce(sum, "USD"));
+		assertThrows(IllegalArgumentException.class, () -> bank.reduce(sum, "USD", t0.minusMillis(1)));
+	}
+
+	@Test
+	void testAsOfResolvesCrossRatesAtTheSameInstant() {
+		Bank bank = new Bank();
+		Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+		bank.addRate("EUR", "USD", new BigDecimal("0.5"), t0);
+		bank.addRate("USD", "CHF", new BigDecimal("2"), t0);
+		bank.addRate("USD", "CHF", new BigDecimal("4"), t0.plusSeconds(10));
+		assertEquals(BigDecimal.ONE, bank.asOf(t0.plusSeconds(5)).rate("EUR", "CHF"));
+		assertEquals(new BigDecimal("2"), bank.asOf(t0.plusSeconds(10)).rate("EUR", "CHF"));
+	}
+
+	@Test
+	void testRateHistoryAppendsCompactlyAndSnapshots() {
+		RateHistory history = new RateHistory();
+		for (int i = 0; i < 1_000; i++) {
+			history.add(Currencies.CHF, Currencies.USD, i * 10L, (1 + i / 100) * FixedPoint.RATE_SCALE);
+		}
+		assertEquals(10, history.points(Currencies.CHF, Currencies.USD));
+		RateHistory frozen = history.snapshot();
+		history.add(Currencies.CHF, Currencies.USD, 5, 42);
+		assertEquals(42, history.rateAt(Currencies.CHF, Currencies.USD, 7));
+		assertEquals(FixedPoint.RATE_SCALE, frozen.rateAt(Currencies.CHF, Currencies.USD, 7));
+		assertEquals(10 * FixedPoint.RATE_SCALE, frozen.rateAt(Currencies.CHF, Currencies.USD, Long.MAX_VALUE));
+		assertEquals(0, frozen.rateAt(Currencies.CHF, Currencies.USD, -1));
+		// the frozen copy shares arrays with the live one, so it must not append into them
+		assertThrows(UnsupportedOperationException.class,
+				() -> frozen.add(Currencies.CHF, Currencies.USD, 20_000, 7 * FixedPoint.RATE_SCALE));
+		history.add(Currencies.CHF, Currencies.USD, 20_000, 9 * FixedPoint.RATE_SCALE);
+		assertEquals(9 * FixedPoint.RATE_SCALE, history.rateAt(Currencies.CHF, Currencies.USD, Long.MAX_VALUE));
+		assertEquals(10 * FixedPoint.RATE_SCALE, frozen.rateAt(Currencies.CHF, Currencies.USD, Long.MAX_VALUE));
+	}
+
+	@Test
+	void testRateHistorySharesTablesBetweenChangesAndDropsThemOnBackfill() {
+		RateHistory history = new RateHistory();
+		history.add(Currencies.CHF, Currencies.USD, 0, FixedPoint.RATE_SCALE);
+		history.add(Currencies.CHF, Currencies.USD, 100, 2 * FixedPoint.RATE_SCALE);
+		RateTable early = history.tableAt(10);
+		assertSame(early, history.tableAt(99));
+		assertNotSame(early, history.tableAt(100));
+		RateTable late = history.tableAt(150);
+		assertSame(late, history.tableAt(Long.MAX_VALUE));
+		// a later quote leaves earlier tables alone
+		history.add(Currencies.USD, Currencies.CHF, 200, FixedPoint.RATE_SCALE);
+		assertSame(early, history.tableAt(50));
+		assertSame(late, history.tableAt(150));
+		// back-filling inside an interval splits it
+		history.add(Currencies.CHF, Currencies.USD, 50, 3 * FixedPoint.RATE_SCALE);
+		assertSame(early, history.tableAt(49));
+		assertEquals(3 * FixedPoint.RATE_SCALE, history.tableAt(60).get(Currencies.CHF, Currencies.USD));
+		assertEquals(2 * FixedPoint.RATE_SCALE, history.tableAt(150).get(Currencies.CHF, Currencies.USD));
+		assertSame(RateTable.EMPTY, history.tableAt(-1));
+	}
+
+	@Test
+	void testReductionCacheHitsStructurallyEqualExpressionsUntilRatesChange() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		ReductionCache cache = new ReductionCache(bank, 100, Duration.ofMinutes(1));
+		Expression sum = new Sum(Money.dollar(5), Money.franc(5));
+		assertEquals(bank.reduce(sum, "USD"), cache.reduce(sum, "USD"));
+		// freshly built trees, as a request parses them, share the entry whatever their term order
+		assertEquals(bank.reduce(sum, "USD"), cache.reduce(new Sum(Money.dollar(5), Money.franc(5)), "USD"));
+		assertEquals(bank.reduce(sum, "USD"), cache.reduce(new Sum(Money.franc(5), Money.dollar(5)), "USD"));
+		assertEquals(2, cache.stats().hits());
+		Expression other = new Sum(Money.dollar(5), Money.franc(6));
+		assertEquals(bank.reduce(other, "USD"), cache.reduce(other, "USD"));
+		assertEquals(2, cache.stats().misses());
+		bank.addRate("CHF", "USD", 4);
+		assertEquals(bank.reduce(sum, "USD"), cache.reduce(new Sum(Money.dollar(5), Money.franc(5)), "USD"));
+		assertEquals(3, cache.stats().misses());
+	}
+
+	@Test
+	void testReductionCacheKeepsAsOfInstantsApartFromLiveRatesAndEachOther() {
+		Bank bank = new Bank();
+		Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+		bank.addRate("CHF", "USD", 2);
+		bank.addRate("CHF", "USD", new BigDecimal("4"), t0);
+		bank.addRate("CHF", "USD", new BigDecimal("8"), t0.plusSeconds(60));
+		ReductionCache cache = new ReductionCache(bank, 100, Duration.ofMinutes(1));
+		Expression francs = Money.franc(8);
+		assertEquals(Money.dollar(4), cache.reduce(francs, "USD"));
+		assertEquals(Money.dollar(2), cache.reduce(bank.asOf(t0.plusSeconds(30)), francs, "USD"));
+		assertEquals(Money.dollar(1), cache.reduce(bank.asOf(t0.plusSeconds(90)), francs, "USD"));
+		// instants between the same two quotes share a table, and so an entry
+		assertEquals(Money.dollar(2), cache.reduce(bank.asOf(t0.plusSeconds(10)), francs, "USD"));
+		assertEquals(Money.dollar(4), cache.reduce(francs, "USD"));
+		assertEquals(2, cache.stats().hits());
+		assertEquals(3, cache.stats().misses());
+	}
+
+	@Test
+	void testReductionCacheAdmitsNewVersionsOverFormerlyHotEntries() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		ReductionCache cache = new ReductionCache(bank, 10, Duration.ofMinutes(1));
+		List<Expression> expressions = new ArrayList<>();
+		for (int i = 0; i < 10; i++) expressions.add(Money.franc(i + 1));
+		for (int round = 0; round < 10; round++) {
+			for (Expression e : expressions) cache.reduce(e, "USD");
+		}
+		bank.addRate("CHF", "USD", 4);
+		for (int round = 0; round < 2; round++) {
+			for (Expression e : expressions) assertEquals(bank.reduce(e, "USD"), cache.reduce(e, "USD"));
+		}
+		// the second round after the change hits: the new entries displaced the old hot ones
+		assertEquals(90 + 10, cache.stats().hits());
+	}
+
+	@Test
+	void testReductionCacheStaysConsistentUnderConcurrentReduces() throws Exception {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		ReductionCache cache = new ReductionCache(bank, 1_000, Duration.ofMinutes(1));
+		List<Expression> expressions = new ArrayList<>();
+		for (int i = 0; i < 200; i++) expressions.add(new Sum(Money.dollar(i), Money.franc(i)));
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int w = 0; w < 4; w++) {
+				workers.add(pool.submit(() -> {
+					for (int round = 0; round < 20; round++) {
+						for (Expression e : expressions) assertEquals(bank.reduce(e, "USD"), cache.reduce(e, "USD"));
+					}
+				}));
+			}
+			for (Future<?> worker : workers) worker.get();
+		} finally {
+			pool.shutdown();
+		}
+		ReductionCache.Stats stats = cache.stats();
+		assertEquals(4 * 20 * 200, stats.hits() + stats.misses());
+		assertTrue(stats.hits() >= 4 * 19 * 200);
+		assertTrue(stats.size() <= 1_000);
+	}
+
+	@Test
+	void testReductionCacheExpiresAndKeepsFrequentEntries() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		long[] now = {0};
+		ReductionCache cache = new ReductionCache(bank, 10, Duration.ofSeconds(1), () -> now[0]);
+		Expression hot = new Sum(Money.dollar(1), Money.franc(1));
+		cache.reduce(hot, "USD");
+		// a plain LRU of ten entries would lose the hot key between every two uses
+		for (int i = 0; i < 1_000; i++) {
+			if (i % 20 == 0) cache.reduce(hot, "USD");
+			cache.reduce(Money.franc(1_000 + i), "USD");
+		}
+		assertEquals(50, cache.stats().hits());
+		assertTrue(cache.stats().size() <= 10);
+		assertTrue(cache.stats().evictions() > 0);
+		now[0] = Duration.ofSeconds(1).toNanos();
+		assertEquals(bank.reduce(hot, "USD"), cache.reduce(hot, "USD"));
+		assertEquals(1, cache.stats().expirations());
+	}
+}
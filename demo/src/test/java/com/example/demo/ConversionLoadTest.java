@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for a running conversion service; not a unit test.
+//   ./gradlew bootRun --args=--conversion.server.rate-writes=true   (in one terminal; seeds CHF,USD)
+//   ./gradlew loadTest -Pport=8080 -Pclients=32 -Pseconds=30 -PbatchSize=1000
+// Each client alternates single /reduce calls and NDJSON /reduce/batch calls and records
+// latencies; throughput and percentiles are printed at the end.
+public class ConversionLoadTest {
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+		String base = "http://localhost:" + port;
+		String single = "{\"sum\":[{\"amount\":\"5.00\",\"currency\":\"USD\"},{\"times\":2,\"of\":{\"amount\":\"10\",\"currency\":\"CHF\"}}]}";
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < batchSize; i++) {
+			lines.append("{\"amount\":\"").append(i % 1000).append(".25\",\"currency\":\"").append(i % 2 == 0 ? "USD" : "CHF").append("\"}\n");
+		}
+		String batch = lines.toString();
+
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+		client.send(HttpRequest.newBuilder(URI.create(base + "/rates"))
+				.POST(HttpRequest.BodyPublishers.ofString("CHF,USD,0.88\n"))
+				.build(), HttpResponse.BodyHandlers.discarding());
+		long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+		long[][] latencies = new long[clients][];
+		AtomicLong requests = new AtomicLong();
+		AtomicLong results = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(clients);
+		for (int c = 0; c < clients; c++) {
+			int id = c;
+			Thread t = new Thread(() -> {
+				long[] samples = new long[1024];
+				int n = 0;
+				try {
+					for (int i = 0; System.nanoTime() < deadline; i++) {
+						boolean isBatch = i % 10 == 9;
+						HttpRequest request = HttpRequest.newBuilder(URI.create(base + (isBatch ? "/reduce/batch?to=USD" : "/reduce?to=USD")))
+								.POST(HttpRequest.BodyPublishers.ofString(isBatch ? batch : single))
+								.build();
+						long start = System.nanoTime();
+						try {
+							HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+							if (response.statusCode() != 200) failures.incrementAndGet();
+							results.addAndGet(isBatch ? batchSize : 1);
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}
+						if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+						samples[n++] = System.nanoTime() - start;
+						requests.incrementAndGet();
+					}
+				} finally {
+					latencies[id] = Arrays.copyOf(samples, n);
+					done.countDown();
+				}
+			});
+			t.start();
+		}
+		done.await();
+
+		long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+		System.out.printf("requests %d (%.0f/s), conversions %d (%.0f/s), failures %d%n",
+				requests.get(), requests.get() / (double) seconds, results.get(), results.get() / (double) seconds, failures.get());
+		if (all.length > 0) {
+			System.out.printf("latency ms p50 %.2f  p99 %.2f  max %.2f%n",
+					all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+		}
+	}
+}
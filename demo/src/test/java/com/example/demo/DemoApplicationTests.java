@@ -1,129 +1,150 @@
 package com.example.demo;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
- * 테스트 주도 개발
- * 1부(17장)까지,
- * 2부 파이썬 차근 차근 따라할 일 남음
+ * 애플리케이션 연결(빈 구성, HTTP 서버) 확인용. 순수 계산 테스트는 스프링 없이 도는 MoneyTests 등에 있다.
  * */
-@SpringBootTest
+@SpringBootTest(properties = "conversion.server.port=0")
 class DemoApplicationTests {
 
-	@Test
-	void contextLoads() {
-	}
-
-	@Test
-	void testMultiplication() {
-		Money five = Money.dollar(5);
-		assertEquals(Money.dollar(10), five.times(2));
-		assertEquals(Money.dollar(15), five.times(3));
-	}
-
-	@Test
-	void testEquality() {
-		assertTrue(Money.dollar(5).equals(Money.dollar(5)));
-		assertFalse(Money.dollar(5).equals(Money.dollar(6)));
-		assertFalse(Money.dollar(5).equals(Money.franc(5)));
-	}
-
-	@Test
-	void testMoneyMultiplication() {
-		Money five = Money.franc(5);
-		assertEquals(Money.franc(10), five.times(2));
-		assertEquals(Money.franc(15), five.times(3));
-	}
-
-	@Test
-	void testCurrency() {
-		assertEquals("USD", Money.dollar(1).currency());
-		assertEquals("CHF", Money.franc(1).currency());
-	}
-
-	@Test
-	void testSimpleAddition() {
-		Money five = Money.dollar(5);
-		Expression sum = five.plus(five);
-		Bank bank = new Bank();
-		Money reduced = bank.reduce(sum, "USD");
-		assertEquals(Money.dollar(10), reduced);
-	}
+	@Autowired
+	Bank sharedBank;
 
-	@Test
-	void testPlusReturnsSum() {
-		Money five = Money.dollar(5);
-		Expression result = five.plus(five);
-		Sum sum = (Sum) result;
-		assertEquals(five, sum.augend);
-		assertEquals(five, sum.addend);
-	}
-
-	@Test
-	void testReduceSum() {
-		Expression sum = new Sum(Money.dollar(3), Money.dollar(4));
-		Bank bank = new Bank();
-		Money result = bank.reduce(sum, "USD");
-		assertEquals(Money.dollar(7), result);
-	}
-
-	@Test
-	void testReduceMoney() {
-		Bank bank = new Bank();
-		Money result = bank.reduce(Money.dollar(1), "USD");
-		assertEquals(Money.dollar(1), result);
-	}
+	@Autowired
+	ConversionServer server;
 
-	@Test
-	void testReduceMoneyDifferentCurrency() {
-		Bank bank = new Bank();
-		bank.addRate("CHF", "USD", 2);
-		Money result = bank.reduce(Money.franc(2), "USD");
-		assertEquals(Money.dollar(1), result);
-	}
+	@Autowired
+	ReductionCache cache;
 
-	@Test
-	void testArrayEquals() {
-		assertFalse(new Object[] {"abc"}.equals(new Object[] {"abc"}));
-	}
+	@Autowired
+	ApplicationContext context;
 
 	@Test
-	void testIdentityRate() {
-		assertEquals(1, new Bank().rate("USD", "USD"));
+	void contextLoads() {
+		assertFalse(context.containsBean("startupProbe"), "시작 측정용 빈은 conversion.startup-probe 가 켜졌을 때만 등록된다");
 	}
 
 	@Test
-	void testMixedAddition() {
-		Expression fiveBucks = Money.dollar(5);
-		Expression tenFrancs = Money.franc(10);
-		Bank bank = new Bank();
-		bank.addRate("CHF", "USD", 2);
-		Money result = bank.reduce(fiveBucks.plus(tenFrancs), "USD");
-		assertEquals(Money.dollar(10), result);
+	void testConversionServerReducesSingleAndBatch() throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		String base = "http://localhost:" + server.port();
+		sharedBank.addRate("CHF", "USD", 2);
+		// rate writes over HTTP are off unless conversion.server.rate-writes is set
+		HttpResponse<Void> rates = client.send(HttpRequest.newBuilder(URI.create(base + "/rates"))
+				.POST(HttpRequest.BodyPublishers.ofString("CHF,USD,3\n"))
+				.build(), HttpResponse.BodyHandlers.discarding());
+		assertEquals(404, rates.statusCode());
+		assertEquals(BigDecimal.valueOf(2), sharedBank.rate("CHF", "USD"));
+
+		HttpResponse<String> single = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce?to=USD"))
+				.POST(HttpRequest.BodyPublishers.ofString("{\"sum\":[{\"amount\":\"5\",\"currency\":\"USD\"},{\"times\":2,\"of\":{\"amount\":\"5\",\"currency\":\"CHF\"}}]}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, single.statusCode());
+		assertEquals("{\"amount\":\"10.00\",\"currency\":\"USD\"}", single.body());
+		long hits = cache.stats().hits();
+		HttpResponse<String> again = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce?to=USD"))
+				.POST(HttpRequest.BodyPublishers.ofString("{\"sum\":[{\"times\":2,\"of\":{\"amount\":\"5\",\"currency\":\"CHF\"}},{\"amount\":\"5\",\"currency\":\"USD\"}]}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(single.body(), again.body());
+		assertEquals(hits + 1, cache.stats().hits());
+
+		int known = Currencies.count();
+		String lines = "{\"amount\":\"1.50\",\"currency\":\"USD\"}\n{\"amount\":\"1\",\"currency\":\"XYZ\"}\n"
+				+ "{\"amount\": oops\n{\"amount\":\"4\",\"currency\":\"CHF\"}\n";
+		HttpResponse<String> batch = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce/batch?to=%55SD"))
+				.POST(HttpRequest.BodyPublishers.ofString(lines))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		String[] results = batch.body().split("\n");
+		assertEquals(4, results.length);
+		assertEquals("{\"amount\":\"1.50\",\"currency\":\"USD\"}", results[0]);
+		assertTrue(results[1].startsWith("{\"error\":\"unknown currency XYZ"));
+		assertTrue(results[2].startsWith("{\"error\":"));
+		assertEquals("{\"amount\":\"2.00\",\"currency\":\"USD\"}", results[3]);
+
+		assertEquals(known, Currencies.count(), "요청에 들어온 통화 코드는 등록되지 않아야 한다");
+
+		HttpResponse<String> bad = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce?to=USD"))
+				.POST(HttpRequest.BodyPublishers.ofString("{\"amount\":\"1.001\",\"currency\":\"USD\"}"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(400, bad.statusCode());
 	}
 
 	@Test
-	void testSumPlusMoney() {
-		Expression fiveBucks = Money.dollar(5);
-		Expression tenFrancs = Money.franc(10);
+	void testRateWritesAreOptInAndBounded() throws Exception {
 		Bank bank = new Bank();
-		bank.addRate("CHF", "USD", 2);
-		Expression sum = new Sum(fiveBucks, tenFrancs).plus(fiveBucks);
-		Money result = bank.reduce(sum, "USD");
-		assertEquals(Money.dollar(15), result);
+		ConversionServer writable = new ConversionServer(bank, new ReductionCache(bank, 100, Duration.ofMinutes(1)), 0, 2, 1, true);
+		writable.start();
+		try {
+			HttpClient client = HttpClient.newHttpClient();
+			String base = "http://localhost:" + writable.port();
+			HttpResponse<Void> ok = client.send(HttpRequest.newBuilder(URI.create(base + "/rates"))
+					.POST(HttpRequest.BodyPublishers.ofString("CHF,USD,2\n"))
+					.build(), HttpResponse.BodyHandlers.discarding());
+			assertEquals(204, ok.statusCode());
+			assertEquals(BigDecimal.valueOf(2), bank.rate("CHF", "USD"));
+
+			int known = Currencies.count();
+			HttpResponse<String> unknown = client.send(HttpRequest.newBuilder(URI.create(base + "/rates"))
+					.POST(HttpRequest.BodyPublishers.ofString("QQQ,USD,2\n"))
+					.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(400, unknown.statusCode());
+			assertEquals(known, Currencies.count(), "요청에 들어온 통화 코드는 등록되지 않아야 한다");
+
+			HttpResponse<String> huge = client.send(HttpRequest.newBuilder(URI.create(base + "/rates"))
+					.POST(HttpRequest.BodyPublishers.ofString("CHF,USD,4\n".repeat(ConversionServer.MAX_RATES_BODY / 10 + 1)))
+					.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(413, huge.statusCode());
+			assertEquals(BigDecimal.valueOf(2), bank.rate("CHF", "USD"));
+		} finally {
+			writable.stop();
+		}
 	}
 
 	@Test
-	void testSumTimes() {
-		Expression fiveBucks = Money.dollar(5);
-		Expression tenFrancs = Money.franc(10);
+	void testStreamingBatchesCannotTakeEveryWorker() throws Exception {
 		Bank bank = new Bank();
-		bank.addRate("CHF", "USD", 2);
-		Expression sum = new Sum(fiveBucks, tenFrancs).times(2);
-		Money result = bank.reduce(sum, "USD");
-		assertEquals(Money.dollar(20), result);
+		ConversionServer limited = new ConversionServer(bank, new ReductionCache(bank, 100, Duration.ofMinutes(1)), 0, 2, 1, false);
+		limited.start();
+		// a client that opens a batch and keeps streaming holds the only batch slot
+		try (Socket slow = new Socket("localhost", limited.port())) {
+			OutputStream out = slow.getOutputStream();
+			out.write(("POST /reduce/batch?to=USD HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			String line = "{\"amount\":\"1\",\"currency\":\"USD\"}\n";
+			out.write((Integer.toHexString(line.length()) + "\r\n" + line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(slow.getInputStream(), StandardCharsets.US_ASCII));
+			assertEquals("HTTP/1.1 200 OK", in.readLine());
+
+			HttpClient client = HttpClient.newHttpClient();
+			String base = "http://localhost:" + limited.port();
+			HttpResponse<String> rejected = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce/batch?to=USD"))
+					.POST(HttpRequest.BodyPublishers.ofString(line))
+					.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(503, rejected.statusCode());
+			HttpResponse<String> single = client.send(HttpRequest.newBuilder(URI.create(base + "/reduce?to=USD"))
+					.POST(HttpRequest.BodyPublishers.ofString(line))
+					.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, single.statusCode());
+		} finally {
+			limited.stop();
+		}
 	}
 }
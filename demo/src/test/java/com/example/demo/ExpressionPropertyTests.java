@@ -0,0 +1,104 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 무작위 Expression 트리에 대한 reduce 불변식 검사.
+ * 사례 수와 시드는 -PexpressionCases / -PexpressionSeed 로 바꿀 수 있다 (실패 메시지의 시드로 재현).
+ * */
+class ExpressionPropertyTests {
+	static final long CASES = Long.getLong("expression.cases", 20_000);
+	static final long SEED = Long.getLong("expression.seed", 20_240_101);
+	static final int MAX_DEPTH = 6;
+
+	static Bank bank;
+
+	@BeforeAll
+	static void setUpRates() {
+		bank = new Bank();
+		bank.addRate("CHF", "USD", new BigDecimal("0.88"));
+		bank.addRate("EUR", "USD", new BigDecimal("0.92"));
+		bank.addRate("JPY", "USD", 150);
+	}
+
+	@Test
+	void testReduceInvariantsOnRandomTrees() {
+		Queue<String> failures = new ConcurrentLinkedQueue<>();
+		LongStream.range(SEED, SEED + CASES).parallel().forEach(seed -> {
+			try {
+				check(seed);
+			} catch (Exception | AssertionError e) {
+				failures.add("seed " + seed + ": " + e);
+			}
+		});
+		assertTrue(failures.isEmpty(), () -> failures.size() + " of " + CASES + " cases failed, first: " + failures.peek());
+	}
+
+	private static void check(long seed) throws Exception {
+		SplittableRandom random = new SplittableRandom(seed);
+		Expression e = RandomExpressions.generate(random, random.nextInt(MAX_DEPTH + 1));
+		String to = RandomExpressions.CODES[random.nextInt(RandomExpressions.CODES.length)];
+		int toId = Currencies.register(to);
+		long[] expected = RandomExpressions.totals(e);
+
+		// 컴파일된 계획은 통화별 합계와 같다
+		assertArrayEquals(expected, totalsOf(ExpressionCompiler.planOf(e)));
+
+		// reduce 는 통화별 합계를 한 번씩 환산해 더한 값이다
+		long converted = 0;
+		for (int c = 0; c < expected.length; c++) {
+			if (expected[c] != 0) converted = Math.addExact(converted, bank.convert(expected[c], c, toId));
+		}
+		Money reduced = bank.reduce(e, to);
+		assertEquals(Money.valueOf(converted, toId), reduced);
+
+		// 캐시된 계획을 다시 써도, 이진/JSON 으로 왕복해도 결과가 같다
+		assertEquals(reduced, bank.reduce(e, to));
+		assertEquals(reduced, bank.reduce(ExpressionCodec.decode(ByteBuffer.wrap(ExpressionCodec.encode(e))), to));
+		StringWriter json = new StringWriter();
+		try (JsonGenerator out = new ObjectMapper().createGenerator(json)) {
+			ExpressionJson.write(e, out);
+		}
+		assertEquals(reduced, bank.reduce(ExpressionJson.read(new ObjectMapper().readTree(json.toString())), to));
+
+		// 병렬 집계와 열 단위 일괄 환산도 같은 값을 낸다
+		assertEquals(reduced, PortfolioAggregator.aggregate(Stream.of(e), bank, to));
+		List<Long> amounts = new ArrayList<>();
+		List<Integer> currencies = new ArrayList<>();
+		for (int c = 0; c < expected.length; c++) {
+			if (expected[c] == 0) continue;
+			amounts.add(expected[c]);
+			currencies.add(c);
+		}
+		assertEquals(reduced, bank.reduce(amounts.stream().mapToLong(Long::longValue).toArray(),
+				currencies.stream().mapToInt(Integer::intValue).toArray(), to).total());
+
+		// 같은 통화끼리만 더하면 times 는 선형이다
+		long sameCurrency = expected[toId];
+		int k = random.nextInt(-5, 6);
+		Money only = Money.valueOf(sameCurrency, toId);
+		assertEquals(Money.valueOf(Math.multiplyExact(sameCurrency, k), toId), bank.reduce(only.times(k), to));
+	}
+
+	private static long[] totalsOf(ReductionPlan plan) {
+		long[] totals = new long[Currencies.count()];
+		for (int i = 0; i < plan.terms(); i++) totals[plan.currency(i)] += plan.amount(i);
+		return totals;
+	}
+}
@@ -0,0 +1,274 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionTests {
+
+	@Test
+	void testDeepSumReducesWithoutRecursion() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Expression deep = Money.dollar(1);
+		for (int i = 0; i < 200_000; i++) {
+			deep = new Sum(deep, i % 2 == 0 ? Money.dollar(1) : Money.franc(2));
+		}
+		assertEquals(Money.dollar(200_001), bank.reduce(deep, "USD"));
+	}
+
+	@Test
+	void testPlusChainStaysFlat() {
+		Expression total = Money.dollar(1).plus(Money.franc(2));
+		for (int i = 0; i < 100_000; i++) {
+			total = total.plus(Money.dollar(1));
+		}
+		MultiSum flat = (MultiSum) total;
+		assertEquals(100_001, flat.size());
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		assertEquals(Money.dollar(100_002), bank.reduce(total, "USD"));
+	}
+
+	@Test
+	void testBranchingPlusDoesNotShareTerms() {
+		Expression base = Money.dollar(1).plus(Money.dollar(2)).plus(Money.dollar(3));
+		Expression left = base.plus(Money.dollar(10));
+		Expression right = base.plus(Money.dollar(20));
+		Bank bank = new Bank();
+		assertEquals(Money.dollar(6), bank.reduce(base, "USD"));
+		assertEquals(Money.dollar(16), bank.reduce(left, "USD"));
+		assertEquals(Money.dollar(26), bank.reduce(right, "USD"));
+	}
+
+	@Test
+	void testMixedTotalsAreConvertedOncePerCurrency() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 3);
+		Expression cents = new Money(1, Currencies.CHF).plus(new Money(1, Currencies.CHF)).plus(new Money(1, Currencies.CHF));
+		assertEquals(1, bank.reduce(cents, "USD").amount);
+	}
+
+	@Test
+	void testCompiledPlanMergesCurrenciesAndFoldsMultipliers() {
+		Expression expr = Money.dollar(5).plus(Money.franc(10)).plus(Money.dollar(3)).times(2).times(3);
+		ReductionPlan plan = ((Scaled) expr).plan();
+		assertEquals(2, plan.terms());
+		assertEquals(Currencies.USD, plan.currency(0));
+		assertEquals(4800, plan.amount(0));
+		assertEquals(6000, plan.amount(1));
+	}
+
+	@Test
+	void testCachedPlanFollowsRateChanges() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Sum sum = new Sum(Money.dollar(5), Money.franc(10));
+		assertEquals(Money.dollar(10), bank.reduce(sum, "USD"));
+		ReductionPlan plan = sum.plan();
+		bank.addRate("CHF", "USD", 5);
+		assertEquals(Money.dollar(7), bank.reduce(sum, "USD"));
+		assertSame(plan, sum.plan());
+	}
+
+	@Test
+	void testCompilerReusesSubtreePlans() {
+		Sum inner = new Sum(Money.dollar(1), Money.franc(2));
+		ReductionPlan innerPlan = inner.plan();
+		Expression outer = inner.plus(inner).times(2);
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		assertEquals(Money.dollar(8), bank.reduce(outer, "USD"));
+		assertSame(innerPlan, inner.plan());
+	}
+
+	@Test
+	void testCodecRoundTripsEveryExpressionKind() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Expression expr = new Sum(Money.dollar(5), Money.franc(10).times(3))
+				.plus(new Money(-250, Currencies.USD))
+				.plus(Money.of(7, "JPY").plus(Money.franc(1)).times(2));
+		bank.addRate("JPY", "USD", 100);
+		byte[] bytes = ExpressionCodec.encode(expr);
+		Expression decoded = ExpressionCodec.decode(ByteBuffer.wrap(bytes));
+		assertEquals(bank.reduce(expr, "USD"), bank.reduce(decoded, "USD"));
+		assertArrayEquals(bytes, ExpressionCodec.encode(decoded));
+		Money extreme = new Money(Long.MIN_VALUE, Currencies.CHF);
+		assertEquals(extreme, ExpressionCodec.decode(ByteBuffer.wrap(ExpressionCodec.encode(extreme))));
+	}
+
+	@Test
+	void testCodecHandlesDeepTreesAndSharedBuffers() {
+		Expression deep = Money.dollar(1);
+		for (int i = 0; i < 200_000; i++) {
+			deep = new Sum(deep, Money.dollar(1));
+		}
+		byte[] one = ExpressionCodec.encode(deep);
+		byte[] two = ExpressionCodec.encode(Money.franc(3));
+		ByteBuffer buffer = ByteBuffer.allocateDirect(one.length + two.length).put(one).put(two).flip();
+		assertEquals(Money.dollar(200_001), new Bank().reduce(ExpressionCodec.decode(buffer), "USD"));
+		assertEquals(Money.franc(3), ExpressionCodec.decode(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	void testCodecIsSmallerThanJsonAndRejectsGarbage() throws Exception {
+		Expression expr = Money.dollar(5);
+		for (int i = 0; i < 100; i++) expr = expr.plus(i % 2 == 0 ? Money.franc(i) : Money.dollar(i));
+		StringWriter json = new StringWriter();
+		try (JsonGenerator out = new ObjectMapper().createGenerator(json)) {
+			ExpressionJson.write(expr, out);
+		}
+		byte[] bytes = ExpressionCodec.encode(expr);
+		assertTrue(bytes.length * 5 < json.toString().length());
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCodec.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1))));
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCodec.decode(ByteBuffer.wrap(new byte[] {9})));
+	}
+
+	@Test
+	void testCodecBoundsNestedCountsAndRejectsUnknownCurrencies() {
+		// VERSION, no currencies, then MULTI headers that each claim every remaining byte
+		int headers = 250_000;
+		ByteBuffer bomb = ByteBuffer.allocate(2 + headers * 4).put(ExpressionCodec.VERSION).put((byte) 0);
+		while (bomb.remaining() >= 4) {
+			int remaining = bomb.remaining() - 4;
+			bomb.put((byte) 2).put((byte) (remaining & 0x7F | 0x80)).put((byte) (remaining >>> 7 & 0x7F | 0x80)).put((byte) (remaining >>> 14));
+		}
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCodec.decode(bomb.flip()));
+
+		byte[] bytes = ExpressionCodec.encode(Money.dollar(1));
+		bytes[3] = 'Q'; // "USD" becomes "QSD"
+		int known = Currencies.count();
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCodec.decode(ByteBuffer.wrap(bytes)));
+		assertEquals(known, Currencies.count());
+	}
+
+	@Test
+	void testParallelAggregationMatchesSequentialPlus() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		bank.addRate("JPY", "USD", 100);
+		int jpy = Currencies.register("JPY");
+		Money[] positions = new Money[1_000_000];
+		Expression sum = Money.dollar(0);
+		for (int i = 0; i < positions.length; i++) {
+			int currency = i % 3 == 0 ? Currencies.USD : i % 3 == 1 ? Currencies.CHF : jpy;
+			positions[i] = Money.valueOf(i % 997, currency);
+			sum = sum.plus(positions[i]);
+		}
+		assertEquals(bank.reduce(sum, "USD"), PortfolioAggregator.aggregate(Arrays.stream(positions).parallel(), bank, "USD"));
+		assertEquals(bank.reduce(sum, "USD"), PortfolioAggregator.aggregate(Arrays.spliterator(positions), bank, "USD"));
+	}
+
+	@Test
+	void testAggregationAcceptsCompositePositions() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Stream<Expression> positions = Stream.of(Money.dollar(1), new Sum(Money.dollar(2), Money.franc(4)), Money.franc(2).times(3));
+		MoneyAccumulator totals = PortfolioAggregator.totals(positions);
+		assertEquals(300, totals.total(Currencies.USD));
+		assertEquals(1000, totals.total(Currencies.CHF));
+		assertEquals(Money.dollar(8), totals.reduce(bank, "USD"));
+	}
+
+	@Test
+	void testLiveValuationsRevalueOnlyAffectedExpressions() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		bank.addRate("EUR", "USD", 4);
+		LiveValuations live = new LiveValuations(bank);
+		List<LiveValuations.ValuationChange> changes = new ArrayList<>();
+		live.subscribe(changes::add);
+		assertEquals(Money.dollar(10), live.register("francs", Money.dollar(5).plus(Money.franc(10)), "USD"));
+		assertEquals(Money.dollar(3), live.register("euros", Money.dollar(1).plus(Money.of(8, "EUR")), "USD"));
+
+		bank.addRate("CHF", "USD", 5);
+		assertEquals(1, changes.size());
+		assertEquals("francs", changes.get(0).id());
+		assertEquals(Money.dollar(7), changes.get(0).current());
+		assertEquals(new Money(-300, Currencies.USD), changes.get(0).delta());
+		assertEquals(Money.dollar(3), live.value("euros"));
+
+		live.unregister("francs");
+		changes.clear();
+		bank.addRate("CHF", "USD", 1);
+		bank.addRate("EUR", "USD", 8);
+		assertEquals(1, changes.size());
+		assertEquals(Money.dollar(2), live.value("euros"));
+		assertNull(live.value("francs"));
+	}
+
+	@Test
+	void testLiveValuationsFollowCrossRates() {
+		Bank bank = new Bank();
+		bank.addRate("EUR", "USD", new BigDecimal("0.5"));
+		bank.addRate("USD", "CHF", 2);
+		LiveValuations live = new LiveValuations(bank);
+		live.register("eur", Money.of(10, "EUR").times(2), "CHF");
+		assertEquals(Money.franc(20), live.value("eur"));
+		bank.addRate("USD", "CHF", 4);
+		assertEquals(Money.franc(10), live.value("eur"));
+		assertEquals(bank.reduce(Money.of(10, "EUR").times(2), "CHF"), live.value("eur"));
+	}
+
+	@Test
+	void testLiveValuationsLeaveNoTermsBehindWhenARateIsMissing() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		LiveValuations live = new LiveValuations(bank);
+		List<LiveValuations.ValuationChange> changes = new ArrayList<>();
+		live.subscribe(changes::add);
+		// the franc term values fine, the euro term has no rate
+		assertThrows(IllegalArgumentException.class,
+				() -> live.register("mixed", Money.franc(10).plus(Money.of(8, "EUR")), "USD"));
+		assertNull(live.value("mixed"));
+
+		bank.addRate("CHF", "USD", 5);
+		assertTrue(changes.isEmpty());
+		bank.addRate("EUR", "USD", 4);
+		assertEquals(Money.dollar(4), live.register("mixed", Money.franc(10).plus(Money.of(8, "EUR")), "USD"));
+	}
+
+	@Test
+	void testLiveValuationsKeepOldValuesWhenRevaluingFails() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		bank.addRate("EUR", "USD", 4);
+		bank.addRate("GBP", "JPY", 200);
+		int chf = Currencies.find("CHF");
+		int eur = Currencies.find("EUR");
+		int usd = Currencies.find("USD");
+		LiveValuations live = new LiveValuations(bank);
+		Expression mixed = Money.franc(10).plus(new Money(Long.MAX_VALUE / 4, eur));
+		Money before = live.register("mixed", mixed, "USD");
+		List<LiveValuations.ValuationChange> changes = new ArrayList<>();
+		live.subscribe(changes::add);
+
+		// 프랑 항은 새 환율로 계산되지만 유로 항은 long 범위를 넘는다
+		assertThrows(ArithmeticException.class,
+				() -> bank.addRates(new int[] {chf, eur}, new int[] {usd, usd}, new long[] {5 * FixedPoint.RATE_SCALE, 1}));
+		assertEquals(before, live.value("mixed"), "실패한 재평가는 일부 항만 바꿔 두면 안 된다");
+		assertTrue(changes.isEmpty());
+
+		bank.addRate("EUR", "USD", 4);
+		assertEquals(bank.reduce(mixed, "USD"), live.value("mixed"));
+		assertEquals(1, changes.size());
+
+		// 바뀐 호가와 이어지지 않은 통화는 다시 볼 필요가 없다
+		boolean[] connected = bank.connected(new int[] {chf}, new int[] {usd});
+		assertTrue(connected[eur]);
+		assertFalse(connected[Currencies.find("GBP")]);
+		assertFalse(connected[Currencies.find("JPY")]);
+	}
+}
@@ -0,0 +1,211 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerStoreTests {
+
+	@Test
+	void testLedgerAppendsScansAndRecovers(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("positions.ledger");
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		try (LedgerStore ledger = LedgerStore.open(file, 1_000)) {
+			for (int i = 0; i < 2_500; i++) {
+				ledger.append(i % 2 == 0 ? Money.dollar(1) : Money.franc(2), i);
+			}
+			assertEquals(2_500, ledger.size());
+			assertEquals(Money.franc(2), ledger.get(1));
+			assertEquals(2_499, ledger.account(2_499));
+			assertEquals(Money.dollar(2_500), ledger.reduce(bank, "USD"));
+		}
+		try (LedgerStore reopened = LedgerStore.open(file, 1_000)) {
+			assertEquals(2_500, reopened.size());
+			reopened.append(Money.of(3, "EUR"), 7);
+			assertEquals(Money.of(3, "EUR"), reopened.get(2_500));
+		}
+	}
+
+	@Test
+	void testLedgerRecoveryStopsAtTornRecord(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("positions.ledger");
+		try (LedgerStore ledger = LedgerStore.open(file, 64)) {
+			for (int i = 0; i < 10; i++) ledger.append(Money.dollar(i), i);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {1}), LedgerStore.HEADER_BYTES + 7L * LedgerStore.RECORD_BYTES + 3);
+		}
+		try (LedgerStore recovered = LedgerStore.open(file, 64)) {
+			assertEquals(7, recovered.size());
+			assertEquals(Money.dollar(21), recovered.reduce(new Bank(), "USD"));
+		}
+		Files.write(dir.resolve("other"), new byte[] {1, 2, 3, 4});
+		assertThrows(IOException.class, () -> LedgerStore.open(dir.resolve("other")));
+	}
+
+	@Test
+	void testLedgerRecoveryDoesNotResurrectRecordsPastTheTornOne(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("positions.ledger");
+		try (LedgerStore ledger = LedgerStore.open(file, 64)) {
+			for (int i = 0; i < 10; i++) ledger.append(Money.dollar(i), i);
+		}
+		// the crash tore record 3 but records 4..9 still carry valid checksums
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {1}), LedgerStore.HEADER_BYTES + 3L * LedgerStore.RECORD_BYTES + 3);
+		}
+		try (LedgerStore recovered = LedgerStore.open(file, 64)) {
+			assertEquals(3, recovered.size());
+			recovered.append(Money.dollar(100), 3);
+		}
+		try (LedgerStore reopened = LedgerStore.open(file, 64)) {
+			assertEquals(4, reopened.size());
+			assertEquals(Money.dollar(103), reopened.reduce(new Bank(), "USD"));
+		}
+	}
+
+	@Test
+	void testReplicatedBanksReadTheirWritesAcrossNodes(@TempDir Path dir) throws Exception {
+		Path log = dir.resolve("rates.log");
+		ReplicatedBank[] nodes = new ReplicatedBank[3];
+		// pollers effectively off, so every read below relies on catching up from the log
+		for (int i = 0; i < nodes.length; i++) nodes[i] = ReplicatedBank.open(log, Duration.ofHours(1));
+		try {
+			long written = nodes[0].addRate("CHF", "USD", new BigDecimal("2"));
+			assertEquals(0, nodes[2].appliedOffset());
+			assertEquals(Money.dollar(1), nodes[2].reduce(Money.franc(2), "USD", written));
+			assertEquals(written, nodes[2].appliedOffset());
+			assertThrows(IllegalStateException.class, () -> nodes[1].snapshot(written + 1));
+
+			ExecutorService writers = Executors.newFixedThreadPool(nodes.length);
+			List<Future<?>> done = new ArrayList<>();
+			for (ReplicatedBank node : nodes) {
+				done.add(writers.submit(() -> {
+					for (int i = 1; i <= 200; i++) {
+						long offset = node.addRate("EUR", "USD", BigDecimal.valueOf(i));
+						assertTrue(node.snapshot(offset).rate("EUR", "USD").signum() > 0);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> writer : done) writer.get();
+			writers.shutdown();
+			long end = nodes[0].catchUp();
+			assertEquals(601, end);
+			for (ReplicatedBank node : nodes) {
+				assertEquals(end, node.catchUp());
+				assertEquals(BigDecimal.valueOf(200), node.snapshot(end).rate("EUR", "USD"));
+			}
+		} finally {
+			for (ReplicatedBank node : nodes) node.close();
+		}
+	}
+
+	@Test
+	void testReplicatedBankTailsBatchesAndReplaysOnOpen(@TempDir Path dir) throws Exception {
+		Path log = dir.resolve("rates.log");
+		try (ReplicatedBank writer = ReplicatedBank.open(log, Duration.ofHours(1));
+		     ReplicatedBank follower = ReplicatedBank.open(log, Duration.ofMillis(1))) {
+			List<Integer> applied = new CopyOnWriteArrayList<>();
+			follower.subscribe((rates, from, to) -> applied.add(from.length));
+			writer.addRates(new int[] {Currencies.CHF, Currencies.register("EUR")}, new int[] {Currencies.USD, Currencies.USD},
+					new long[] {2 * FixedPoint.RATE_SCALE, FixedPoint.RATE_SCALE / 2});
+			long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+			while (follower.appliedOffset() < 2 && System.nanoTime() < deadline) Thread.sleep(1);
+			assertEquals(2, follower.appliedOffset());
+			assertEquals(List.of(2), applied);
+			assertEquals(1, follower.appliedBatches());
+			assertEquals(Money.dollar(3), follower.reduce(new Sum(Money.franc(2), Money.of(1, "EUR")), "USD", 0));
+		}
+		// a writer that died mid-record leaves a partial tail for the next append to overwrite
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), RateLog.HEADER_BYTES + 2L * RateLog.RECORD_BYTES);
+		}
+		try (ReplicatedBank reopened = ReplicatedBank.open(log, Duration.ofHours(1))) {
+			assertEquals(3, reopened.addRate("CHF", "USD", new BigDecimal("4")));
+			assertEquals(new BigDecimal("4"), reopened.snapshot(3).rate("CHF", "USD"));
+		}
+		Files.write(dir.resolve("other"), new byte[] {1, 2, 3, 4});
+		assertThrows(IOException.class, () -> ReplicatedBank.open(dir.resolve("other"), Duration.ofHours(1)));
+	}
+
+	@Test
+	void testRateLogDropsATornBatchBeforeTheNextAppend(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("rates.log");
+		int eur = Currencies.register("EUR");
+		try (RateLog log = RateLog.open(file)) {
+			log.append(new int[] {Currencies.CHF}, new int[] {Currencies.USD}, new long[] {2 * FixedPoint.RATE_SCALE});
+			log.append(new int[] {eur, eur, eur}, new int[] {Currencies.USD, Currencies.USD, Currencies.USD},
+					new long[] {7 * FixedPoint.RATE_SCALE, 8 * FixedPoint.RATE_SCALE, 9 * FixedPoint.RATE_SCALE});
+		}
+		// the crash kept the first two quotes of the batch but not the one closing it
+		corrupt(file, 3);
+		try (RateLog log = RateLog.open(file)) {
+			assertEquals(1, log.size());
+			assertEquals(2, log.append(new int[] {eur}, new int[] {Currencies.USD}, new long[] {FixedPoint.RATE_SCALE}));
+			RateLog.Batch batch = log.read(0, 100);
+			assertEquals(2, batch.size());
+			assertArrayEquals(new long[] {2 * FixedPoint.RATE_SCALE, FixedPoint.RATE_SCALE}, batch.scaledRates());
+		}
+	}
+
+	@Test
+	void testRateLogRefusesToCutCommittedBatchesAtACorruptRecord(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("rates.log");
+		try (RateLog log = RateLog.open(file)) {
+			for (int i = 1; i <= 4; i++) {
+				log.append(new int[] {Currencies.CHF}, new int[] {Currencies.USD}, new long[] {i * FixedPoint.RATE_SCALE});
+			}
+		}
+		long length = Files.size(file);
+		// whole batches follow the bad record, so followers may already have applied them
+		corrupt(file, 1);
+		IOException failure = assertThrows(IOException.class, () -> ReplicatedBank.open(file, Duration.ofHours(1)));
+		assertTrue(failure.getMessage().contains("record 1"), failure.getMessage());
+		assertEquals(length, Files.size(file));
+		assertFalse(RateLog.APPEND_LOCKS.containsKey(file.toAbsolutePath().normalize()));
+	}
+
+	@Test
+	void testReplicatedBankFailsReadsOnceTheLogIsCutBelowWhatItApplied(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("rates.log");
+		try (ReplicatedBank node = ReplicatedBank.open(file, Duration.ofHours(1))) {
+			for (int i = 1; i <= 3; i++) node.addRate("CHF", "USD", BigDecimal.valueOf(i));
+			assertEquals(3, node.catchUp());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(RateLog.HEADER_BYTES + RateLog.RECORD_BYTES);
+			}
+			// what the tailer runs on every poll
+			assertThrows(IllegalStateException.class, node::catchUp);
+			assertThrows(IllegalStateException.class, () -> node.snapshot(0));
+			// later appends do not make the node follow a log it no longer matches
+			node.addRate("CHF", "USD", BigDecimal.TEN);
+			node.addRate("CHF", "USD", BigDecimal.TEN);
+			node.addRate("CHF", "USD", BigDecimal.TEN);
+			assertThrows(IllegalStateException.class, () -> node.snapshot(0));
+		}
+		assertFalse(RateLog.APPEND_LOCKS.containsKey(file.toAbsolutePath().normalize()));
+	}
+
+	private static void corrupt(Path log, long record) throws IOException {
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0x7F}), RateLog.HEADER_BYTES + record * RateLog.RECORD_BYTES + 7);
+		}
+	}
+}
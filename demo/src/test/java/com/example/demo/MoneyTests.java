@@ -0,0 +1,191 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 테스트 주도 개발
+ * 1부(17장)까지,
+ * 2부 파이썬 차근 차근 따라할 일 남음
+ * */
+class MoneyTests {
+
+	@Test
+	void testMultiplication() {
+		Money five = Money.dollar(5);
+		assertEquals(Money.dollar(10), five.times(2));
+		assertEquals(Money.dollar(15), five.times(3));
+	}
+
+	@Test
+	void testEquality() {
+		assertTrue(Money.dollar(5).equals(Money.dollar(5)));
+		assertFalse(Money.dollar(5).equals(Money.dollar(6)));
+		assertFalse(Money.dollar(5).equals(Money.franc(5)));
+	}
+
+	@Test
+	void testMoneyMultiplication() {
+		Money five = Money.franc(5);
+		assertEquals(Money.franc(10), five.times(2));
+		assertEquals(Money.franc(15), five.times(3));
+	}
+
+	@Test
+	void testCurrency() {
+		assertEquals("USD", Money.dollar(1).currency());
+		assertEquals("CHF", Money.franc(1).currency());
+	}
+
+	@Test
+	void testSimpleAddition() {
+		Money five = Money.dollar(5);
+		Expression sum = five.plus(five);
+		Bank bank = new Bank();
+		Money reduced = bank.reduce(sum, "USD");
+		assertEquals(Money.dollar(10), reduced);
+	}
+
+	@Test
+	void testPlusReturnsSum() {
+		Money five = Money.dollar(5);
+		Expression result = five.plus(five);
+		Sum sum = (Sum) result;
+		assertEquals(five, sum.augend);
+		assertEquals(five, sum.addend);
+	}
+
+	@Test
+	void testReduceSum() {
+		Expression sum = new Sum(Money.dollar(3), Money.dollar(4));
+		Bank bank = new Bank();
+		Money result = bank.reduce(sum, "USD");
+		assertEquals(Money.dollar(7), result);
+	}
+
+	@Test
+	void testReduceMoney() {
+		Bank bank = new Bank();
+		Money result = bank.reduce(Money.dollar(1), "USD");
+		assertEquals(Money.dollar(1), result);
+	}
+
+	@Test
+	void testReduceMoneyDifferentCurrency() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Money result = bank.reduce(Money.franc(2), "USD");
+		assertEquals(Money.dollar(1), result);
+	}
+
+	@Test
+	void testArrayEquals() {
+		assertFalse(new Object[] {"abc"}.equals(new Object[] {"abc"}));
+	}
+
+	@Test
+	void testIdentityRate() {
+		assertEquals(BigDecimal.ONE, new Bank().rate("USD", "USD"));
+	}
+
+	@Test
+	void testMixedAddition() {
+		Expression fiveBucks = Money.dollar(5);
+		Expression tenFrancs = Money.franc(10);
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Money result = bank.reduce(fiveBucks.plus(tenFrancs), "USD");
+		assertEquals(Money.dollar(10), result);
+	}
+
+	@Test
+	void testSumPlusMoney() {
+		Expression fiveBucks = Money.dollar(5);
+		Expression tenFrancs = Money.franc(10);
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Expression sum = new Sum(fiveBucks, tenFrancs).plus(fiveBucks);
+		Money result = bank.reduce(sum, "USD");
+		assertEquals(Money.dollar(15), result);
+	}
+
+	@Test
+	void testSumTimes() {
+		Expression fiveBucks = Money.dollar(5);
+		Expression tenFrancs = Money.franc(10);
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		Expression sum = new Sum(fiveBucks, tenFrancs).times(2);
+		Money result = bank.reduce(sum, "USD");
+		assertEquals(Money.dollar(20), result);
+	}
+
+	@Test
+	void testCurrencyIdsAreStable() {
+		assertEquals(Currencies.register("USD"), Money.dollar(1).currencyId);
+		assertEquals("CHF", Currencies.code(Money.franc(1).currencyId));
+		int gbp = Currencies.register("GBP");
+		assertEquals(gbp, Currencies.register(new String("GBP")));
+		assertSame(Currencies.code(gbp), Money.of(1, "GBP").currency());
+		assertEquals(gbp, Currencies.find("GBP"));
+		int known = Currencies.count();
+		assertThrows(IllegalArgumentException.class, () -> Currencies.find("ZZQ"));
+		assertThrows(IllegalArgumentException.class, () -> Money.dollar(1).reduce(new Bank(), "ZZQ"));
+		assertEquals(known, Currencies.count());
+	}
+
+	@Test
+	void testCurrencyScalesAndLargeAmounts() {
+		Bank bank = new Bank();
+		bank.addRate("JPY", "USD", 150);
+		assertEquals(Money.of(new BigDecimal("6.67"), "USD"), bank.reduce(Money.of(1000, "JPY"), "USD"));
+
+		Money large = Money.of(5_000_000_000L, "USD");
+		assertEquals(Money.of(10_000_000_000L, "USD"), large.times(2));
+		assertEquals("5000000000.00 USD", large.toString());
+	}
+
+	@Test
+	void testMoneyIsAHashableValue() {
+		assertEquals(Money.dollar(5).hashCode(), new Money(500, Currencies.USD).hashCode());
+		assertNotEquals(Money.dollar(5).hashCode(), Money.franc(5).hashCode());
+		assertEquals(1, new HashSet<>(Arrays.asList(Money.dollar(5), new Money(500, Currencies.USD))).size());
+		assertNotEquals(Money.dollar(5), "5.00 USD");
+		for (Field field : Money.class.getDeclaredFields()) {
+			assertTrue(Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers()), field.getName());
+		}
+	}
+
+	@Test
+	void testCommonAmountsAreShared() {
+		assertSame(Money.dollar(5), Money.dollar(5));
+		assertSame(Money.dollar(10), Money.dollar(5).times(2));
+		assertSame(Money.of(7, "JPY"), new Money(7, Currencies.register("JPY")).times(1));
+		assertNotSame(Money.dollar(Money.CACHED_MAJOR_UNITS), Money.dollar(Money.CACHED_MAJOR_UNITS));
+		assertNotSame(new Money(501, Currencies.USD).times(1), new Money(501, Currencies.USD).times(1));
+	}
+
+	@Test
+	void testAccumulatorSumsWithoutBuildingExpressions() {
+		Bank bank = new Bank();
+		bank.addRate("CHF", "USD", 2);
+		MoneyAccumulator total = new MoneyAccumulator();
+		for (int i = 0; i < 1_000; i++) {
+			total.add(i % 2 == 0 ? Money.dollar(1) : Money.franc(2));
+		}
+		assertEquals(2, total.currencies());
+		assertEquals(50_000, total.total(Currencies.USD));
+		assertEquals(Money.dollar(1_000), total.reduce(bank, "USD"));
+		total.reset();
+		total.add(Money.franc(4));
+		assertEquals(1, total.currencies());
+		assertEquals(Money.dollar(2), total.reduce(bank, "USD"));
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import java.util.SplittableRandom;
+
+// 무작위 Expression 트리 생성기와, 통화별 합계를 단순 재귀로 계산하는 기준 모델.
+final class RandomExpressions {
+	static final String[] CODES = {"USD", "CHF", "EUR", "JPY"};
+
+	private RandomExpressions() {
+	}
+
+	static Expression generate(SplittableRandom random, int depth) {
+		int pick = depth == 0 ? 0 : random.nextInt(100);
+		if (pick < 40) {
+			return new Money(random.nextLong(-1_000_000, 1_000_000), Currencies.register(CODES[random.nextInt(CODES.length)]));
+		}
+		if (pick < 65) {
+			return new Sum(generate(random, depth - 1), generate(random, depth - 1));
+		}
+		if (pick < 85) {
+			Expression chain = generate(random, depth - 1);
+			int terms = random.nextInt(1, 6);
+			for (int i = 0; i < terms; i++) chain = chain.plus(generate(random, depth - 1));
+			return chain;
+		}
+		return generate(random, depth - 1).times(random.nextInt(-5, 6));
+	}
+
+	// 통화 id 별 합계 (minor units). 트리가 얕으므로 재귀로 충분하다.
+	static long[] totals(Expression e) {
+		long[] totals = new long[Currencies.count()];
+		add(e, 1, totals);
+		return totals;
+	}
+
+	private static void add(Expression e, long multiplier, long[] totals) {
+		if (e instanceof Money m) {
+			totals[m.currencyId] = Math.addExact(totals[m.currencyId], Math.multiplyExact(m.amount, multiplier));
+		} else if (e instanceof Sum s) {
+			add(s.augend, multiplier, totals);
+			add(s.addend, multiplier, totals);
+		} else if (e instanceof MultiSum ms) {
+			for (int i = 0; i < ms.size(); i++) add(ms.term(i), multiplier, totals);
+		} else if (e instanceof Scaled sc) {
+			add(sc.expression, Math.multiplyExact(multiplier, sc.multiplier), totals);
+		} else {
+			throw new IllegalArgumentException("unexpected " + e);
+		}
+	}
+}
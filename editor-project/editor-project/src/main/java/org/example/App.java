@@ -33,7 +33,9 @@ public class App extends Application {
         history = new DocumentHistory(document);
         textArea = new TextArea();
         fileService = new FileService();
-        controller = new EditorController(document, history, fileService);
+        // 파일별 Undo 기록은 저장 시 디스크에 남겨 다음 실행에서도 이어서 사용한다
+        java.nio.file.Path undoDir = java.nio.file.Paths.get(System.getProperty("user.home"), ".tdd-editor", "undo");
+        controller = new EditorController(document, history, fileService, new UndoStore(undoDir, 64L * 1024 * 1024));
         autoSaveService = new AutoSaveService(
                 document,
                 fileService,
@@ -337,7 +339,9 @@ public class App extends Application {
         int length = text.length();
         int words = (int) java.util.Arrays.stream(text.split("\\s+"))
                 .filter(s -> !s.isBlank()).count();
-        statusBar.setText(String.format("Ln %d, Col %d | Chars %d | Words %d", line, col, length, words));
+        TextEncoding enc = controller.getCurrentEncoding();
+        String encoding = enc.charset().name() + (enc.bom() ? " BOM" : "");
+        statusBar.setText(String.format("Ln %d, Col %d | Chars %d | Words %d | %s", line, col, length, words, encoding));
     }
 
     private void rebuildRecentMenu(Stage stage, Menu recentMenu) {
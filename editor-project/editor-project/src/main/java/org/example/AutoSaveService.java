@@ -13,6 +13,7 @@ import java.util.concurrent.TimeUnit;
  * 문서 내용을 주기적으로 임시 파일에 저장하는 서비스.
  * - 지정한 경로 제공자(PathSupplier)를 통해 대상 경로를 동적으로 결정
  * - 일정 시간 간격으로 현재 Document 내용을 저장
+ * - 편집 스레드를 막지 않도록 Document 의 불변 스냅샷을 읽는다
  */
 public class AutoSaveService {
     public interface PathSupplier {
@@ -27,6 +28,7 @@ public class AutoSaveService {
     private final PathSupplier pathSupplier;
 
     private ScheduledFuture<?> future;
+    private long lastSavedVersion = -1;
     private String lastSavedSnapshot = null;
 
     public AutoSaveService(Document document,
@@ -60,14 +62,18 @@ public class AutoSaveService {
 
     private void tick() {
         try {
-            String current = document.getText();
+            DocumentSnapshot snapshot = document.snapshot();
+            if (snapshot.version() == lastSavedVersion) return; // 변경 없음
+            String current = snapshot.toString();
             if (lastSavedSnapshot != null && lastSavedSnapshot.equals(current)) {
-                return; // 변경 없음
+                lastSavedVersion = snapshot.version();
+                return; // 버전만 바뀌고 내용은 같음
             }
             Path path = pathSupplier.getPath();
             if (path == null) return;
             fileService.save(path, current);
             lastSavedSnapshot = current;
+            lastSavedVersion = snapshot.version();
         } catch (IOException ignored) {
             // 자동저장 실패는 UI에 방해 주지 않도록 조용히 무시
         } catch (Exception ignored) {
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 파일 압축 형식.
+ * - 열 때는 확장자가 아니라 매직 바이트로 판별한다 (이름만 .gz 인 평문 파일도 열 수 있도록)
+ * - 압축/해제는 스트림으로 처리하므로 압축을 푼 전체 내용을 디스크에 따로 쓰지 않는다
+ */
+public enum Compression {
+    NONE,
+    GZIP;
+
+    static final int HEADER_SIZE = 2;
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+
+    static Compression detect(byte[] header, int length) {
+        if (length >= HEADER_SIZE
+                && (header[0] & 0xFF) == GZIP_MAGIC_1
+                && (header[1] & 0xFF) == GZIP_MAGIC_2) {
+            return GZIP;
+        }
+        return NONE;
+    }
+
+    /** 새로 저장할 파일 이름으로 압축 여부를 정한다 (Save As 에서 사용). */
+    public static Compression forFileName(Path path) {
+        if (path == null || path.getFileName() == null) return NONE;
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".gz") ? GZIP : NONE;
+    }
+
+    InputStream decompress(InputStream in, int bufferSize) throws IOException {
+        return this == GZIP ? new GZIPInputStream(in, bufferSize) : in;
+    }
+
+    OutputStream compress(OutputStream out, int bufferSize) throws IOException {
+        return this == GZIP ? new GZIPOutputStream(out, bufferSize) : out;
+    }
+}
@@ -1,36 +1,57 @@
 package org.example;
 
+/**
+ * 편집 중인 문서.
+ * 내용은 불변 {@link DocumentSnapshot} 으로 보관하고, 편집할 때마다 새 스냅샷으로 교체한다.
+ * 다른 스레드(자동저장 등)는 {@link #snapshot()} 으로 잠금 없이 일관된 버전을 읽는다.
+ */
 public class Document {
-    private final StringBuilder text;
+    private volatile DocumentSnapshot current = DocumentSnapshot.EMPTY;
 
     public Document() {
-        this.text = new StringBuilder();
+    }
+
+    /** 현재 내용의 불변 스냅샷. 이후 편집의 영향을 받지 않는다. */
+    public DocumentSnapshot snapshot() {
+        return current;
+    }
+
+    public long version() {
+        return current.version();
+    }
+
+    public int length() {
+        return current.length();
     }
 
     public String getText() {
-        return this.text.toString();
+        return current.toString();
     }
 
-    public void addText(String newText) {
-        this.text.append(newText);
+    public synchronized void addText(String newText) {
+        current = current.append(String.valueOf(newText));
     }
 
-    public void removeText(int start, int end) {
+    public synchronized void removeText(int start, int end) {
         if (start < 0 || end < 0)
             throw new IllegalArgumentException("인텍스는 음수가 될 수 없습니다.");
         if (start > end)
             throw new IllegalArgumentException("start index must not exceed end index");
-        if (end > this.text.length())
+        if (end > current.length())
             throw new IndexOutOfBoundsException();
-        this.text.delete(start, end);
+        current = current.delete(start, end);
+    }
+
+    public synchronized void clear() {
+        current = current.replaceAll("");
     }
 
-    public void clear() {
-        this.text.setLength(0);
+    public synchronized void setText(String value) {
+        current = current.replaceAll(value == null ? "" : value);
     }
 
-    public void setText(String value) {
-        this.text.setLength(0);
-        if (value != null) this.text.append(value);
+    /** 조각 단위로 모은 내용으로 바꾼다. 전체를 하나의 String 으로 만들지 않는다. */
+    public synchronized void setContent(DocumentSnapshot.Builder content) {
+        current = current.replaceAll(content);
     }
 }
@@ -1,7 +1,11 @@
 package org.example;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 
 public class DocumentHistory {
     private static final int DEFAULT_LIMIT = 1000;
@@ -10,50 +14,148 @@ public class DocumentHistory {
     private final Deque<String> history;
     private final Deque<String> futureHistory;
     private final int limit;
+    /** null 이 아니면 Undo 트리 모드: 가지를 버리지 않고 트리에 기록한다. */
+    private final UndoTree tree;
+    /** 메모리 기록보다 더 과거의 기록. 메모리 기록을 다 되돌린 뒤에 한 단계씩 읽는다. */
+    private UndoStore.Reader persisted;
 
     public DocumentHistory(Document document) {
         this(document, DEFAULT_LIMIT);
     }
 
     public DocumentHistory(Document document, int limit) {
+        this(document, limit, null);
+    }
+
+    /** Undo 트리 모드. tree 는 같은 document 를 대상으로 만들어져 있어야 한다. */
+    public DocumentHistory(UndoTree tree) {
+        this(tree.document(), DEFAULT_LIMIT, tree);
+    }
+
+    private DocumentHistory(Document document, int limit, UndoTree tree) {
         this.document = document;
         this.limit = Math.max(1, limit);
+        this.tree = tree;
         history = new LinkedList<>();
         futureHistory = new LinkedList<>();
     }
 
+    /** 트리 모드가 아니면 null. */
+    UndoTree tree() {
+        return tree;
+    }
+
     void executeAdd(String text) {
+        if (tree != null) {
+            commitToTree(document.getText() + text);
+            return;
+        }
         pushHistory();
         document.addText(text);
         futureHistory.clear();
     }
 
     void executeSet(String newText) {
+        if (tree != null) {
+            commitToTree(newText == null ? "" : newText);
+            return;
+        }
         pushHistory();
         document.setText(newText);
         futureHistory.clear();
     }
 
+    /**
+     * 파일에서 불러온 내용으로 바꾼다. 조각으로 받은 내용을 합치지 않고 그대로 문서에 넣는다.
+     * 트리 모드에서는 불러온 내용을 새 루트로 트리를 다시 시작한다. 이전 상태에서 이어 붙이면
+     * 파일 전체가 String 델타 하나로 트리에 남기 때문이다.
+     */
+    void executeLoad(DocumentSnapshot.Builder content) {
+        if (tree != null) {
+            document.setContent(content);
+            tree.reset();
+            persisted = null;
+            return;
+        }
+        pushHistory();
+        document.setContent(content);
+        futureHistory.clear();
+    }
+
     void undo() {
+        if (tree != null) {
+            if (!tree.canUndo()) loadPersisted();
+            tree.undo();
+            return;
+        }
+        if (history.isEmpty()) loadPersisted();
         doIt(futureHistory, history);
     }
 
     void redo() {
+        if (tree != null) {
+            tree.redo();
+            return;
+        }
         doIt(history, futureHistory);
     }
 
     boolean canUndo() {
-        return !history.isEmpty();
+        boolean inMemory = tree != null ? tree.canUndo() : !history.isEmpty();
+        return inMemory || (persisted != null && persisted.hasPrevious());
     }
 
     boolean canRedo() {
-        return !futureHistory.isEmpty();
+        return tree != null ? tree.canRedo() : !futureHistory.isEmpty();
+    }
+
+    /** 메모리 기록을 비우고 디스크에서 이어 읽을 과거 기록을 붙인다 (null 이면 기록 없음). */
+    void restore(UndoStore.Reader reader) {
+        history.clear();
+        futureHistory.clear();
+        if (tree != null) tree.reset();
+        persisted = reader;
+    }
+
+    /**
+     * 현재 Undo 기록을 파일별 로그로 남기고, 이후에는 새 로그에서 과거 기록을 이어 읽는다.
+     * 트리 모드에서는 현재 가지(루트 → 현재)만 남긴다.
+     */
+    void persistTo(UndoStore store, Path file) throws IOException {
+        DocumentSnapshot current = document.snapshot();
+        if (tree != null) {
+            List<TextDelta> path = tree.pathToRoot();
+            CharSequence root = path.isEmpty() ? current : tree.rootText();
+            persisted = store.save(file, current, path, root, persisted);
+        } else {
+            persisted = store.save(file, current, new ArrayList<>(history), persisted);
+        }
+    }
+
+    private void commitToTree(String newText) {
+        tree.commit(newText);
+        // 예산 때문에 가장 오래된 루트를 버렸으면 디스크의 과거 기록과 이어지지 않는다
+        if (tree.hasDroppedRoot()) persisted = null;
+    }
+
+    private void loadPersisted() {
+        if (persisted == null) return;
+        String previous = persisted.previous();
+        if (previous == null) return;
+        if (tree != null) {
+            tree.prependRoot(previous);
+            // 예산이 붙인 루트를 바로 버렸으면 그 너머의 기록은 현재 트리와 이어지지 않는다
+            if (tree.hasDroppedRoot()) persisted = null;
+        } else {
+            history.addFirst(previous);
+        }
     }
 
     private void pushHistory() {
         history.addFirst(document.getText());
         while (history.size() > limit) {
             history.removeLast();
+            persisted = null; // 한도를 넘어 오래된 상태를 버렸으므로 디스크 기록과 이어지지 않는다
         }
     }
 
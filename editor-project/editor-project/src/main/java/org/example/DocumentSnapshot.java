@@ -0,0 +1,313 @@
+package org.example;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 특정 시점의 문서 내용을 나타내는 불변 스냅샷.
+ * - 내부는 문자열 조각을 잎으로 갖는 로프(rope) 구조이며, 편집 시 바뀌지 않은 하위 트리를 새 스냅샷과 공유한다
+ * - 잎은 원본 String 의 구간만 가리키므로 setText/부분 삭제 시 문자 배열을 복사하지 않는다
+ * - 불변이므로 자동저장/검색/통계 스레드가 잠금 없이 읽어도 안전하다
+ */
+public final class DocumentSnapshot implements CharSequence {
+    /** 작은 추가 입력은 이 길이까지 인접 잎과 합쳐 트리가 잘게 쪼개지지 않도록 한다. */
+    static final int LEAF_MERGE_LIMIT = 512;
+    /** 연속 추가로 트리가 한쪽으로 깊어지면 이 깊이에서 다시 균형을 맞춘다. */
+    static final int MAX_DEPTH = 48;
+
+    static final DocumentSnapshot EMPTY = new DocumentSnapshot(Leaf.EMPTY, 0);
+
+    /** 내용은 바뀌지 않는다. toString 이 만든 문자열 하나짜리 잎으로만 교체된다. */
+    private volatile Node root;
+    private final long version;
+    private volatile String text;
+
+    private DocumentSnapshot(Node root, long version) {
+        this.root = root;
+        this.version = version;
+    }
+
+    /** 문서가 바뀔 때마다 1씩 증가하는 버전. 같은 버전이면 내용도 같다. */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= root.length) throw new IndexOutOfBoundsException(index);
+        return root.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        checkRange(start, end);
+        return stringOf(slice(root, start, end));
+    }
+
+    /**
+     * 전체 내용. 처음 호출할 때 한 번만 만들고 이후에는 재사용한다.
+     * 만든 뒤에는 트리를 그 문자열 하나를 가리키는 잎으로 바꿔, 조각들과 문자열을 이중으로 들고 있지 않는다.
+     */
+    @Override
+    public String toString() {
+        String s = text;
+        if (s == null) {
+            s = stringOf(root);
+            text = s;
+            root = Leaf.of(s);
+        }
+        return s;
+    }
+
+    /** 잎 순서대로 내용을 가리키는 읽기 전용 버퍼들. 저장처럼 처음부터 끝까지 훑을 때 문자열을 합치지 않고 쓴다. */
+    List<CharBuffer> chunks() {
+        List<Leaf> leaves = new ArrayList<>();
+        collectLeaves(root, leaves);
+        List<CharBuffer> out = new ArrayList<>(leaves.size());
+        for (Leaf leaf : leaves) out.add(CharBuffer.wrap(leaf.source, leaf.offset, leaf.offset + leaf.length));
+        return out;
+    }
+
+    /** 두 스냅샷의 내용이 같은지 잎 단위로 비교한다. 어느 쪽도 하나의 String 으로 합치지 않는다. */
+    boolean contentEquals(DocumentSnapshot other) {
+        if (this == other) return true;
+        if (length() != other.length()) return false;
+        List<CharBuffer> mine = chunks();
+        List<CharBuffer> theirs = other.chunks();
+        CharBuffer a = CharBuffer.allocate(0);
+        CharBuffer b = CharBuffer.allocate(0);
+        for (int i = 0, j = 0; ; ) {
+            while (!a.hasRemaining() && i < mine.size()) a = mine.get(i++);
+            while (!b.hasRemaining() && j < theirs.size()) b = theirs.get(j++);
+            if (!a.hasRemaining() || !b.hasRemaining()) return a.hasRemaining() == b.hasRemaining();
+            // 잎 경계가 서로 다르므로 겹치는 구간만큼씩 비교한다
+            int n = Math.min(a.remaining(), b.remaining());
+            if (!a.subSequence(0, n).equals(b.subSequence(0, n))) return false;
+            a.position(a.position() + n);
+            b.position(b.position() + n);
+        }
+    }
+
+    DocumentSnapshot append(String value) {
+        if (value.isEmpty()) return next(root);
+        return next(concat(root, Leaf.of(value)));
+    }
+
+    DocumentSnapshot delete(int start, int end) {
+        checkRange(start, end);
+        return next(concat(slice(root, 0, start), slice(root, end, root.length)));
+    }
+
+    DocumentSnapshot replaceAll(String value) {
+        return next(Leaf.of(value));
+    }
+
+    DocumentSnapshot replaceAll(Builder content) {
+        return next(content.root());
+    }
+
+    int depth() {
+        return root.depth;
+    }
+
+    private DocumentSnapshot next(Node newRoot) {
+        return new DocumentSnapshot(newRoot, version + 1);
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > root.length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + root.length);
+        }
+    }
+
+    private static String stringOf(Node node) {
+        if (node instanceof Leaf leaf) return leaf.asString();
+        StringBuilder sb = new StringBuilder(node.length);
+        node.appendTo(sb);
+        return sb.toString();
+    }
+
+    private static Node concat(Node left, Node right) {
+        if (left.length == 0) return right;
+        if (right.length == 0) return left;
+        if (right instanceof Leaf r && r.length <= LEAF_MERGE_LIMIT) {
+            if (left instanceof Leaf l && l.length + r.length <= LEAF_MERGE_LIMIT) {
+                return Leaf.of(l.asString() + r.asString());
+            }
+            if (left instanceof Concat c && c.right instanceof Leaf lr && lr.length + r.length <= LEAF_MERGE_LIMIT) {
+                return concat(c.left, Leaf.of(lr.asString() + r.asString()));
+            }
+        }
+        Node joined = new Concat(left, right);
+        return joined.depth > MAX_DEPTH ? rebalance(joined) : joined;
+    }
+
+    private static Node slice(Node node, int start, int end) {
+        if (start == 0 && end == node.length) return node;
+        if (start == end) return Leaf.EMPTY;
+        if (node instanceof Leaf leaf) {
+            return new Leaf(leaf.source, leaf.offset + start, end - start);
+        }
+        Concat c = (Concat) node;
+        int split = c.left.length;
+        if (end <= split) return slice(c.left, start, end);
+        if (start >= split) return slice(c.right, start - split, end - split);
+        return concat(slice(c.left, start, split), slice(c.right, 0, end - split));
+    }
+
+    private static Node rebalance(Node node) {
+        List<Leaf> leaves = new ArrayList<>();
+        collectLeaves(node, leaves);
+        return build(leaves, 0, leaves.size());
+    }
+
+    private static void collectLeaves(Node node, List<Leaf> out) {
+        // 편향된 트리에서도 스택이 넘치지 않도록 명시적 스택으로 순회한다
+        ArrayList<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node n = stack.remove(stack.size() - 1);
+            if (n instanceof Concat c) {
+                stack.add(c.right);
+                stack.add(c.left);
+            } else if (n.length > 0) {
+                out.add((Leaf) n);
+            }
+        }
+    }
+
+    private static Node build(List<Leaf> leaves, int from, int to) {
+        if (to - from == 0) return Leaf.EMPTY;
+        if (to - from == 1) return leaves.get(from);
+        int mid = (from + to) >>> 1;
+        return new Concat(build(leaves, from, mid), build(leaves, mid, to));
+    }
+
+    /**
+     * 파일 불러오기처럼 긴 내용을 조각 단위로 받아 균형 잡힌 로프로 만든다.
+     * 받은 조각을 그대로 잎으로 쓰므로 전체를 하나의 String 으로 합치거나 복사하지 않는다.
+     */
+    static final class Builder implements Appendable {
+        private final List<Leaf> leaves = new ArrayList<>();
+        private int length;
+
+        @Override
+        public Builder append(CharSequence csq) {
+            String s = String.valueOf(csq);
+            if (!s.isEmpty()) {
+                length = Math.addExact(length, s.length());
+                leaves.add(Leaf.of(s));
+            }
+            return this;
+        }
+
+        @Override
+        public Builder append(CharSequence csq, int start, int end) {
+            return append(String.valueOf(csq).subSequence(start, end));
+        }
+
+        @Override
+        public Builder append(char c) {
+            return append(String.valueOf(c));
+        }
+
+        int length() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length);
+            for (Leaf leaf : leaves) leaf.appendTo(sb);
+            return sb.toString();
+        }
+
+        private Node root() {
+            return build(leaves, 0, leaves.size());
+        }
+    }
+
+    private abstract static class Node {
+        final int length;
+        final int depth;
+
+        Node(int length, int depth) {
+            this.length = length;
+            this.depth = depth;
+        }
+
+        abstract char charAt(int index);
+
+        abstract void appendTo(StringBuilder sb);
+    }
+
+    private static final class Leaf extends Node {
+        static final Leaf EMPTY = new Leaf("", 0, 0);
+
+        final String source;
+        final int offset;
+
+        Leaf(String source, int offset, int length) {
+            super(length, 0);
+            this.source = source;
+            this.offset = offset;
+        }
+
+        static Leaf of(String s) {
+            return s.isEmpty() ? EMPTY : new Leaf(s, 0, s.length());
+        }
+
+        String asString() {
+            if (offset == 0 && length == source.length()) return source;
+            return source.substring(offset, offset + length);
+        }
+
+        @Override
+        char charAt(int index) {
+            return source.charAt(offset + index);
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            sb.append(source, offset, offset + length);
+        }
+    }
+
+    private static final class Concat extends Node {
+        final Node left;
+        final Node right;
+
+        Concat(Node left, Node right) {
+            super(left.length + right.length, Math.max(left.depth, right.depth) + 1);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        char charAt(int index) {
+            Node n = this;
+            while (n instanceof Concat c) {
+                if (index < c.left.length) {
+                    n = c.left;
+                } else {
+                    index -= c.left.length;
+                    n = c.right;
+                }
+            }
+            return n.charAt(index);
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            List<Leaf> leaves = new ArrayList<>();
+            collectLeaves(this, leaves);
+            for (Leaf leaf : leaves) leaf.appendTo(sb);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.example;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Objects;
 
 /**
@@ -12,14 +13,23 @@ public class EditorController {
     private final Document document;
     private final DocumentHistory history;
     private final FileService fileService;
+    private final UndoStore undoStore;
 
     private Path currentFile;
-    private String lastSavedText = "";
+    private TextEncoding currentEncoding = TextEncoding.UTF_8;
+    private Compression currentCompression = Compression.NONE;
+    private DocumentSnapshot lastSaved = DocumentSnapshot.EMPTY;
 
     public EditorController(Document document, DocumentHistory history, FileService fileService) {
+        this(document, history, fileService, null);
+    }
+
+    /** undoStore 를 주면 파일별 Undo 기록을 저장 시 디스크에 남기고, 다시 열 때 이어서 사용한다. */
+    public EditorController(Document document, DocumentHistory history, FileService fileService, UndoStore undoStore) {
         this.document = Objects.requireNonNull(document);
         this.history = Objects.requireNonNull(history);
         this.fileService = Objects.requireNonNull(fileService);
+        this.undoStore = undoStore;
     }
 
     public void applyUserEdit(String newText) {
@@ -35,26 +45,47 @@ public class EditorController {
     public void newDocument() {
         history.executeSet("");
         currentFile = null;
-        lastSavedText = document.getText();
+        currentEncoding = TextEncoding.UTF_8;
+        currentCompression = Compression.NONE;
+        lastSaved = document.snapshot();
     }
 
+    /**
+     * 파일을 한 번만 열어 읽으며, 디코딩한 청크를 그대로 문서의 로프 잎으로 넣는다.
+     * Undo 기록과 맞춰 볼 해시도 청크를 받을 때 함께 계산해 전체를 String 으로 만들지 않는다.
+     */
     public void open(Path path) throws IOException {
-        String content = fileService.load(path);
-        history.executeSet(content);
+        // 디스크의 Undo 기록은 같은 파일을 다시 열 때나 메모리 기록이 없을 때만 잇는다.
+        // 그 밖에는 지금까지의 기록을 남겨 두어 열기 자체도 되돌릴 수 있게 한다
+        boolean restore = undoStore != null && (path.equals(currentFile) || !history.canUndo());
+        DocumentSnapshot.Builder content = new DocumentSnapshot.Builder();
+        UndoStore.ContentHash hash = restore ? new UndoStore.ContentHash(content) : null;
+        FileService.Opened opened = fileService.open(path, hash == null ? content : hash);
+        history.executeLoad(content);
         currentFile = path;
-        lastSavedText = document.getText();
+        currentEncoding = opened.encoding();
+        currentCompression = opened.compression();
+        lastSaved = document.snapshot();
+        if (restore) {
+            history.restore(undoStore.open(path, hash.digest(), lastSaved));
+        }
     }
 
     public void save() throws IOException {
         if (currentFile == null) throw new IllegalStateException("no current file");
-        fileService.save(currentFile, document.getText());
-        lastSavedText = document.getText();
+        fileService.save(currentFile, document.snapshot(), currentEncoding, currentCompression);
+        lastSaved = document.snapshot();
+        persistUndo();
     }
 
+    /** 새 이름이 .gz 로 끝나면 gzip 으로 압축해서 저장한다. */
     public void saveAs(Path path) throws IOException {
-        fileService.save(path, document.getText());
+        Compression compression = Compression.forFileName(path);
+        fileService.save(path, document.snapshot(), currentEncoding, compression);
         currentFile = path;
-        lastSavedText = document.getText();
+        currentCompression = compression;
+        lastSaved = document.snapshot();
+        persistUndo();
     }
 
     public void undo() {
@@ -73,12 +104,47 @@ public class EditorController {
         return history.canRedo();
     }
 
+    /** Undo 트리 모드에서 지정한 버전으로 이동한다. 트리 모드가 아니거나 없는 버전이면 false. */
+    public boolean jumpToVersion(int version) {
+        UndoTree tree = history.tree();
+        return tree != null && tree.jumpTo(version);
+    }
+
+    /** Undo 트리 모드에서 주어진 시각의 상태로 이동한다 (예: 5분 전). 트리 모드가 아니면 false. */
+    public boolean restoreAsOf(Instant when) {
+        UndoTree tree = history.tree();
+        if (tree == null) return false;
+        tree.jumpToTime(when);
+        return true;
+    }
+
+    /** 버전이 같으면 같은 내용이다. 다르면 잎 단위로 비교하므로 큰 문서도 String 으로 합치지 않는다. */
     public boolean isDirty() {
-        return !Objects.equals(document.getText(), lastSavedText);
+        DocumentSnapshot current = document.snapshot();
+        if (current.version() == lastSaved.version()) return false;
+        return !current.contentEquals(lastSaved);
+    }
+
+    private void persistUndo() {
+        if (undoStore == null) return;
+        try {
+            history.persistTo(undoStore, currentFile);
+        } catch (IOException ignored) {
+            // Undo 기록 저장 실패는 파일 저장 자체를 실패로 만들지 않는다
+        }
     }
 
     public Path getCurrentFile() {
         return currentFile;
     }
+
+    /** 열린 파일에서 추정한 인코딩. 저장 시 그대로 사용한다. */
+    public TextEncoding getCurrentEncoding() {
+        return currentEncoding;
+    }
+
+    public Compression getCurrentCompression() {
+        return currentCompression;
+    }
 }
 
@@ -1,25 +1,288 @@
 package org.example;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * 텍스트 파일 입출력.
+ * - 불러오기: 앞부분 샘플로 인코딩을 추정한 뒤 고정 크기 청크 단위로 디코딩 (파일 전체 byte[] 를 만들지 않음)
+ * - 저장: 지정한 인코딩(기본 UTF-8)으로 청크 단위 인코딩, BOM이 있던 파일은 BOM 유지.
+ *   임시 파일에 쓴 뒤 원자적으로 교체하므로 실패해도 기존 파일이 남는다.
+ *   심볼릭 링크는 가리키는 파일을 바꾸고, 기존 파일의 권한은 그대로 유지한다
+ * - gzip 압축 파일은 매직 바이트로 감지해 스트림으로 풀면서 읽고, 요청 시 압축해서 저장
+ */
 public class FileService {
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int SAMPLE_SIZE = 16 * 1024;
 
-    public void save(Path path, String content) throws IOException {
+    public void save(Path path, CharSequence content) throws IOException {
+        save(path, content, TextEncoding.UTF_8);
+    }
+
+    public void save(Path path, CharSequence content, TextEncoding encoding) throws IOException {
+        save(path, content, encoding, Compression.NONE);
+    }
+
+    /** {@link DocumentSnapshot} 을 주면 로프의 잎을 차례로 인코딩하므로 전체를 하나의 String 으로 합치지 않는다. */
+    public void save(Path path, CharSequence content, TextEncoding encoding, Compression compression) throws IOException {
         if (path == null) throw new IllegalArgumentException("path must not be null");
+        if (encoding == null) encoding = TextEncoding.UTF_8;
+        if (compression == null) compression = Compression.NONE;
         if (content == null) content = "";
-        Path parent = path.getParent();
-        if (parent != null) {
-            Files.createDirectories(parent);
+        // 링크 자체를 일반 파일로 덮어쓰지 않도록 실제 파일 경로에 저장한다
+        Path target = resolveLinks(path);
+        Path parent = target.getParent();
+        Files.createDirectories(parent);
+        // 같은 디렉터리의 임시 파일에 끝까지 쓴 뒤 바꿔 넣는다.
+        // 인코딩 도중 실패해도 원래 파일은 잘리지 않고 그대로 남는다.
+        Path temp = createSibling(parent, target.getFileName().toString());
+        try {
+            copyPermissions(target, temp);
+            write(temp, content, encoding, compression);
+            replace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static Path resolveLinks(Path path) throws IOException {
+        if (Files.exists(path)) return path.toRealPath();
+        // 아직 없는 파일을 가리키는 링크면 링크를 따라간 자리에 새로 만든다
+        Path p = path.toAbsolutePath();
+        for (int hops = 0; hops < 40 && Files.isSymbolicLink(p); hops++) {
+            p = p.resolveSibling(Files.readSymbolicLink(p));
+        }
+        return p;
+    }
+
+    /**
+     * createTempFile 은 POSIX 에서 권한을 600 으로 만들어 저장할 때마다 파일 권한이 바뀐다.
+     * createFile 은 umask 에 따른 기본 권한으로 만들므로 새 파일도 평소처럼 생긴다.
+     */
+    private static Path createSibling(Path parent, String name) throws IOException {
+        while (true) {
+            Path temp = parent.resolve("." + name + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException taken) {
+                // 이름이 겹치면 다른 이름으로 다시 시도한다
+            }
+        }
+    }
+
+    private static void copyPermissions(Path original, Path temp) throws IOException {
+        if (!Files.exists(original) || Files.getFileAttributeView(temp, PosixFileAttributeView.class) == null) return;
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(original));
+    }
+
+    private static void write(Path target, CharSequence content, TextEncoding encoding, Compression compression) throws IOException {
+        // 표현할 수 없는 문자는 조용히 '?' 로 바꾸지 않고 CharacterCodingException 으로 알린다
+        CharsetEncoder encoder = encoding.charset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        List<CharBuffer> chunks = content instanceof DocumentSnapshot snapshot
+                ? snapshot.chunks() : List.of(CharBuffer.wrap(content));
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_SIZE);
+        try (OutputStream raw = Files.newOutputStream(target);
+             OutputStream os = compression.compress(raw, CHUNK_SIZE)) {
+            os.write(encoding.bomBytes());
+            // 잎 경계에서 잘린 서로게이트 쌍의 앞 글자는 다음 잎의 첫 글자와 붙여서 인코딩한다
+            CharBuffer carry = CharBuffer.allocate(2);
+            for (CharBuffer chunk : chunks) {
+                CharBuffer in = chunk.duplicate();
+                if (carry.position() > 0 && in.hasRemaining()) {
+                    carry.put(in.get()).flip();
+                    encode(encoder, carry, out, os, false);
+                    carry.compact();
+                }
+                encode(encoder, in, out, os, false);
+                carry.put(in);
+            }
+            encode(encoder, carry.flip(), out, os, true);
+            while (encoder.flush(out).isOverflow()) {
+                drain(out, os);
+            }
+            drain(out, os);
+        }
+    }
+
+    private static void encode(CharsetEncoder encoder, CharBuffer in, ByteBuffer out, OutputStream os,
+                               boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult r = encoder.encode(in, out, endOfInput);
+            if (r.isError()) r.throwException();
+            drain(out, os);
+            if (r.isUnderflow()) return;
+        }
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
-        Files.writeString(path, content, StandardCharsets.UTF_8);
     }
 
     public String load(Path path) throws IOException {
+        StringBuilder out = new StringBuilder();
+        load(path, out);
+        return out.toString();
+    }
+
+    /**
+     * 파일을 out 에 이어 붙이고 추정한 인코딩을 돌려준다.
+     * 압축 파일이면 풀면서 읽고, 해석할 수 없는 바이트는 대체 문자(U+FFFD)로 바뀐다.
+     */
+    public TextEncoding load(Path path, StringBuilder out) throws IOException {
+        return open(path, out).encoding();
+    }
+
+    /**
+     * 파일을 한 번만 열어 압축 여부와 인코딩을 판별하고, 디코딩한 청크를 차례로 out 에 넘긴다.
+     * out 이 {@link DocumentSnapshot.Builder} 이면 청크가 그대로 로프의 잎이 된다.
+     */
+    public Opened open(Path path, Appendable out) throws IOException {
+        if (path == null) throw new IllegalArgumentException("path must not be null");
+        try (Source source = Source.open(path)) {
+            // 압축 파일은 디스크 크기로 글자 수를 가늠할 수 없으므로 미리 용량을 잡지 않는다
+            long sizeHint = source.compression == Compression.NONE ? sizeHint(path) : -1;
+            return new Opened(decode(source.in, sizeHint, out), source.compression);
+        }
+    }
+
+    /** 불러온 파일의 인코딩과 압축 형식. 저장할 때 그대로 사용한다. */
+    public record Opened(TextEncoding encoding, Compression compression) {
+    }
+
+    public TextEncoding detectEncoding(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException("path must not be null");
+        try (Source source = Source.open(path)) {
+            byte[] sample = new byte[SAMPLE_SIZE];
+            return TextEncoding.detect(sample, readFully(source.in, sample, sample.length));
+        }
+    }
+
+    public Compression detectCompression(Path path) throws IOException {
         if (path == null) throw new IllegalArgumentException("path must not be null");
-        byte[] bytes = Files.readAllBytes(path);
-        return new String(bytes, StandardCharsets.UTF_8);
+        try (Source source = Source.open(path)) {
+            return source.compression;
+        }
+    }
+
+    /** 파일을 한 번 열어 앞부분 매직 바이트를 mark/reset 으로 엿본 뒤, 압축이면 풀면서 읽는 스트림. */
+    private static final class Source implements AutoCloseable {
+        final InputStream in;
+        final Compression compression;
+
+        private Source(InputStream in, Compression compression) {
+            this.in = in;
+            this.compression = compression;
+        }
+
+        static Source open(Path path) throws IOException {
+            BufferedInputStream raw = new BufferedInputStream(Files.newInputStream(path), CHUNK_SIZE);
+            try {
+                raw.mark(Compression.HEADER_SIZE);
+                byte[] header = new byte[Compression.HEADER_SIZE];
+                Compression compression = Compression.detect(header, readFully(raw, header, header.length));
+                raw.reset();
+                return new Source(compression.decompress(raw, CHUNK_SIZE), compression);
+            } catch (IOException e) {
+                raw.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** 스트림 앞부분으로 인코딩을 추정하고 나머지는 청크 단위로 디코딩한다. */
+    TextEncoding decode(InputStream is, long sizeHint, Appendable out) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(CHUNK_SIZE);
+        int sampled = readFully(is, in.array(), SAMPLE_SIZE);
+        TextEncoding encoding = TextEncoding.detect(in.array(), sampled);
+        in.limit(sampled);
+        in.position(encoding.bomBytes().length);
+
+        CharsetDecoder decoder = encoding.charset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        long expectedChars = (long) (sizeHint * decoder.averageCharsPerByte());
+        if (out instanceof StringBuilder sb && expectedChars > 0 && sb.length() + expectedChars < Integer.MAX_VALUE - 8) {
+            sb.ensureCapacity(sb.length() + (int) expectedChars);
+        }
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        boolean eof = false;
+        while (!eof) {
+            in.compact();
+            int n = is.read(in.array(), in.position(), in.remaining());
+            if (n < 0) {
+                eof = true;
+            } else {
+                in.position(in.position() + n);
+            }
+            in.flip();
+            CoderResult r;
+            do {
+                r = decoder.decode(in, chars, eof);
+                flushChars(chars, out);
+            } while (r.isOverflow());
+        }
+        while (decoder.flush(chars).isOverflow()) {
+            flushChars(chars, out);
+        }
+        flushChars(chars, out);
+        return encoding;
+    }
+
+    private static long sizeHint(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] buf, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = is.read(buf, total, len - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static void drain(ByteBuffer out, OutputStream os) throws IOException {
+        out.flip();
+        os.write(out.array(), out.arrayOffset() + out.position(), out.remaining());
+        out.clear();
+    }
+
+    private static void flushChars(CharBuffer chars, Appendable out) throws IOException {
+        chars.flip();
+        out.append(chars);
+        chars.clear();
     }
 }
@@ -0,0 +1,38 @@
+package org.example;
+
+/**
+ * 두 문자열의 차이: 공통 접두/접미 길이와 그 사이에 들어갈 문자열.
+ * from 은 한 글자씩만 읽으므로 로프 스냅샷을 그대로 넘겨도 된다.
+ * apply(from) = from 의 앞 prefix 글자 + replacement + from 의 뒤 suffix 글자
+ */
+record TextDelta(int prefix, int suffix, String replacement) {
+
+    static TextDelta between(CharSequence from, String to) {
+        int max = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < max && from.charAt(prefix) == to.charAt(prefix)) prefix++;
+        int suffix = 0;
+        while (suffix < max - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        // 서로게이트 쌍 중간에서 자르면 UTF-8 로 인코딩할 수 없으므로 경계를 한 글자 물린다
+        if (prefix > 0 && Character.isHighSurrogate(to.charAt(prefix - 1))) prefix--;
+        if (suffix > 0 && Character.isLowSurrogate(to.charAt(to.length() - suffix))) suffix--;
+        return new TextDelta(prefix, suffix, to.substring(prefix, to.length() - suffix));
+    }
+
+    /** 같은 경계로 반대 방향(to → from)을 나타내는 델타. */
+    TextDelta inverse(String from) {
+        return new TextDelta(prefix, suffix, from.substring(prefix, from.length() - suffix));
+    }
+
+    boolean fits(String from) {
+        return prefix >= 0 && suffix >= 0 && prefix + suffix <= from.length();
+    }
+
+    String apply(String from) {
+        if (!fits(from)) throw new IllegalArgumentException("delta does not fit text of length " + from.length());
+        return from.substring(0, prefix) + replacement + from.substring(from.length() - suffix);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 파일의 문자 인코딩과 BOM 유무.
+ * - 앞부분 샘플(prefix)만 보고 인코딩을 추정한다 (BOM → UTF-16 → UTF-8 → CP949 → Latin-1 순)
+ * - 저장 시 같은 인코딩/BOM을 그대로 다시 쓰기 위해 보관한다
+ */
+public record TextEncoding(Charset charset, boolean bom) {
+    public static final TextEncoding UTF_8 = new TextEncoding(StandardCharsets.UTF_8, false);
+
+    /** EUC-KR 상위 집합. JDK에 따라 없을 수 있으므로 없으면 EUC-KR로 대체한다. */
+    static final Charset CP949 = lookup("x-windows-949", "EUC-KR");
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
+    public TextEncoding {
+        Objects.requireNonNull(charset);
+    }
+
+    /** 저장 시 앞에 붙일 BOM 바이트 (없으면 빈 배열). */
+    public byte[] bomBytes() {
+        if (!bom) return new byte[0];
+        if (charset.equals(StandardCharsets.UTF_8)) return UTF8_BOM.clone();
+        if (charset.equals(StandardCharsets.UTF_16BE)) return UTF16BE_BOM.clone();
+        if (charset.equals(StandardCharsets.UTF_16LE)) return UTF16LE_BOM.clone();
+        return new byte[0];
+    }
+
+    /**
+     * 샘플 바이트 [0, length) 로 인코딩을 추정한다.
+     * 샘플 끝에서 멀티바이트 문자가 잘려도 오류로 보지 않는다.
+     */
+    public static TextEncoding detect(byte[] sample, int length) {
+        if (startsWith(sample, length, UTF8_BOM)) return new TextEncoding(StandardCharsets.UTF_8, true);
+        if (startsWith(sample, length, UTF16BE_BOM)) return new TextEncoding(StandardCharsets.UTF_16BE, true);
+        if (startsWith(sample, length, UTF16LE_BOM)) return new TextEncoding(StandardCharsets.UTF_16LE, true);
+
+        Charset utf16 = guessUtf16WithoutBom(sample, length);
+        if (utf16 != null) return new TextEncoding(utf16, false);
+
+        if (isAscii(sample, length) || decodesCleanly(StandardCharsets.UTF_8, sample, length)) return UTF_8;
+        if (CP949 != null && decodesCleanly(CP949, sample, length)) return new TextEncoding(CP949, false);
+        return new TextEncoding(StandardCharsets.ISO_8859_1, false);
+    }
+
+    private static boolean startsWith(byte[] sample, int length, byte[] prefix) {
+        if (length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (sample[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /** BOM 없는 UTF-16: ASCII 위주 텍스트라면 짝수/홀수 위치 중 한쪽에 0 바이트가 몰린다. */
+    private static Charset guessUtf16WithoutBom(byte[] sample, int length) {
+        int pairs = length / 2;
+        if (pairs < 2) return null;
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            if (sample[i] == 0) evenZeros++;
+            if (sample[i + 1] == 0) oddZeros++;
+        }
+        if (oddZeros * 10 >= pairs * 3 && evenZeros * 10 < pairs) return StandardCharsets.UTF_16LE;
+        if (evenZeros * 10 >= pairs * 3 && oddZeros * 10 < pairs) return StandardCharsets.UTF_16BE;
+        return null;
+    }
+
+    private static boolean isAscii(byte[] sample, int length) {
+        for (int i = 0; i < length; i++) {
+            if (sample[i] < 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean decodesCleanly(Charset charset, byte[] sample, int length) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample, 0, length);
+        CharBuffer out = CharBuffer.allocate(1024);
+        while (true) {
+            CoderResult r = decoder.decode(in, out, false);
+            if (r.isError()) return false;
+            if (r.isUnderflow()) return true; // 남은 바이트는 잘린 멀티바이트 문자일 수 있음
+            out.clear();
+        }
+    }
+
+    private static Charset lookup(String... names) {
+        for (String name : names) {
+            try {
+                if (Charset.isSupported(name)) return Charset.forName(name);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,400 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 파일별 Undo 기록을 디스크에 보관하는 저장소.
+ * - 파일 하나당 로그 하나: 이름은 절대 경로의 해시, 헤더에는 마지막 저장 시점 내용의 해시를 기록한다
+ * - 레코드는 전체 문자열이 아니라 "새 상태 → 이전 상태" 델타(공통 접두/접미 길이 + 바뀐 부분)이며 CRC32 로 검증한다
+ * - 최신 레코드가 파일 끝에 오므로, 열 때는 헤더만 확인하고 Undo 할 때마다 뒤에서부터 한 레코드씩 읽는다
+ * - 전체 용량이 예산을 넘으면 오래된 레코드/오래된 파일부터 정리한다
+ *
+ * 로그 형식: [magic "UNDO"][version][내용 UTF-16 코드 단위의 sha-256 32바이트] 뒤에 레코드 반복
+ * (해시는 불러오는 청크를 그대로 흘려 보내며 계산할 수 있도록 UTF-8 이 아니라 UTF-16 으로 센다)
+ * 레코드 형식: [int len][payload][int crc32][int len], payload = [varint prefix][varint suffix][UTF-8 교체 문자열]
+ */
+public class UndoStore {
+    private static final byte[] MAGIC = {'U', 'N', 'D', 'O'};
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HASH_SIZE = 32;
+    static final int HEADER_SIZE = MAGIC.length + 1 + HASH_SIZE;
+    private static final int RECORD_OVERHEAD = 12;
+
+    private final Path directory;
+    private final long diskBudgetBytes;
+
+    public UndoStore(Path directory, long diskBudgetBytes) {
+        this.directory = Objects.requireNonNull(directory);
+        this.diskBudgetBytes = Math.max(HEADER_SIZE, diskBudgetBytes);
+    }
+
+    /**
+     * 저장된 기록이 현재 내용과 맞으면 지연 로딩 Reader 를 돌려준다.
+     * 파일이 외부에서 바뀌었거나 로그가 손상되었으면 기록을 버리고 null 을 돌려준다.
+     */
+    public Reader open(Path file, CharSequence currentText) {
+        return open(file, contentHash(currentText), currentText);
+    }
+
+    /**
+     * 내용의 해시를 이미 계산해 둔 경우 (예: 불러오면서 {@link ContentHash} 로 계산).
+     * currentText 는 디스크 기록을 처음 되돌릴 때에야 문자열로 만든다.
+     */
+    public Reader open(Path file, byte[] currentHash, CharSequence currentText) {
+        Path log = logPath(file);
+        if (!Files.exists(log)) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "r")) {
+            byte[] header = new byte[HEADER_SIZE];
+            if (raf.length() < HEADER_SIZE) throw new IOException("truncated header");
+            raf.readFully(header);
+            if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC) || header[MAGIC.length] != FORMAT_VERSION) {
+                throw new IOException("unknown format");
+            }
+            byte[] stored = Arrays.copyOfRange(header, MAGIC.length + 1, HEADER_SIZE);
+            if (!Arrays.equals(stored, currentHash)) {
+                Files.deleteIfExists(log);
+                return null;
+            }
+            return new Reader(log, raf.length(), currentText);
+        } catch (IOException e) {
+            try { Files.deleteIfExists(log); } catch (IOException ignored) {}
+            return null;
+        }
+    }
+
+    /**
+     * 현재 내용과 메모리 Undo 상태(최신 → 과거 순)를 로그로 기록한다.
+     * tail 이 있으면 아직 읽지 않은 과거 레코드는 디코딩 없이 그대로 이어 붙인다.
+     * tail 은 states 의 가장 오래된 상태(없으면 currentText)에서 이어지는 기록이어야 한다.
+     *
+     * @return 새 로그에서 states 보다 과거 부분을 가리키는 Reader
+     */
+    public Reader save(Path file, CharSequence currentText, List<String> states, Reader tail) throws IOException {
+        List<TextDelta> deltas = new ArrayList<>(states.size());
+        CharSequence newer = currentText;
+        for (String older : states) {
+            deltas.add(TextDelta.between(newer, older));
+            newer = older;
+        }
+        return save(file, currentText, deltas, newer, tail);
+    }
+
+    /**
+     * 이미 계산된 델타(최신 → 과거 순, 각각 한 단계 이전 상태로 되돌림)를 기록한다.
+     * oldest 는 델타를 모두 적용한 가장 오래된 상태이며 tail 은 그 상태에서 이어진다.
+     */
+    Reader save(Path file, CharSequence currentText, List<TextDelta> deltas, CharSequence oldest, Reader tail) throws IOException {
+        Files.createDirectories(directory);
+        Path log = logPath(file);
+        Path tmp = log.resolveSibling(log.getFileName() + ".tmp");
+
+        List<byte[]> newRecords = new ArrayList<>(deltas.size());
+        long newBytes = 0;
+        for (TextDelta delta : deltas) {
+            byte[] record = encodeRecord(delta);
+            newRecords.add(record);
+            newBytes += record.length;
+        }
+        // 최신 기록이 예산을 넘으면 가장 오래된 메모리 상태부터 디스크에 남기지 않는다
+        int keepFrom = 0;
+        while (keepFrom < newRecords.size() && HEADER_SIZE + newBytes > diskBudgetBytes) {
+            newBytes -= newRecords.get(newRecords.size() - 1 - keepFrom).length;
+            keepFrom++;
+        }
+        boolean tailUsable = tail != null && keepFrom == 0;
+
+        long boundary;
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            out.write(MAGIC);
+            out.write(FORMAT_VERSION);
+            out.write(contentHash(currentText));
+            long tailBytes = tailUsable ? tail.copyUnreadTo(out, diskBudgetBytes - HEADER_SIZE - newBytes) : 0;
+            boundary = HEADER_SIZE + tailBytes;
+            for (int i = newRecords.size() - 1 - keepFrom; i >= 0; i--) {
+                out.write(newRecords.get(i));
+            }
+        }
+        try {
+            Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING);
+        }
+        enforceBudget(log);
+        // 메모리 상태 일부를 버렸다면 과거 체인이 끊기므로 더 이상 이어 읽지 않는다
+        return new Reader(log, keepFrom == 0 ? boundary : HEADER_SIZE, oldest);
+    }
+
+    public void delete(Path file) throws IOException {
+        Files.deleteIfExists(logPath(file));
+    }
+
+    Path logPath(Path file) {
+        String key = HexFormat.of().formatHex(sha256(file.toAbsolutePath().normalize().toString()));
+        return directory.resolve(key + ".undo");
+    }
+
+    /** 저장소 전체가 예산을 넘으면 최근에 쓰지 않은 로그부터 지운다. */
+    private void enforceBudget(Path keep) throws IOException {
+        List<Path> logs;
+        try (Stream<Path> s = Files.list(directory)) {
+            logs = new ArrayList<>(s.filter(p -> p.getFileName().toString().endsWith(".undo")).toList());
+        }
+        long total = 0;
+        for (Path p : logs) total += Files.size(p);
+        if (total <= diskBudgetBytes) return;
+        logs.sort(Comparator.comparing(UndoStore::lastModified));
+        for (Path p : logs) {
+            if (total <= diskBudgetBytes) break;
+            if (p.equals(keep)) continue;
+            total -= Files.size(p);
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static byte[] encodeRecord(TextDelta delta) {
+        byte[] replacement = delta.replacement().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(replacement.length + 10);
+        writeVarint(payload, delta.prefix());
+        writeVarint(payload, delta.suffix());
+        payload.writeBytes(replacement);
+        byte[] body = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.length + RECORD_OVERHEAD);
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(body.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return record.toByteArray();
+    }
+
+    static String applyRecord(String newer, byte[] body) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        int prefix = readVarint(in);
+        int suffix = readVarint(in);
+        TextDelta delta = new TextDelta(prefix, suffix, new String(body, in.position(), in.remaining(), StandardCharsets.UTF_8));
+        if (!delta.fits(newer)) throw new IOException("delta out of range");
+        return delta.apply(newer);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) throw new IOException("truncated varint");
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /** {@link DocumentSnapshot} 은 잎 단위로 훑으므로 전체를 하나의 String 으로 합치지 않는다. */
+    static byte[] contentHash(CharSequence text) {
+        ContentHash hash = new ContentHash(null);
+        if (text instanceof DocumentSnapshot snapshot) {
+            for (CharSequence chunk : snapshot.chunks()) hash.update(chunk, 0, chunk.length());
+        } else {
+            hash.update(text, 0, text.length());
+        }
+        return hash.digest();
+    }
+
+    private static byte[] sha256(String s) {
+        return newDigest().digest(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 받은 내용을 next 로 그대로 넘기면서 로그 헤더에 쓰는 해시를 함께 계산한다.
+     * 파일을 불러오는 Appendable 앞에 끼우면 디코딩하는 청크마다 해시가 갱신된다.
+     */
+    static final class ContentHash implements Appendable {
+        private final Appendable next;
+        private final MessageDigest digest = newDigest();
+        private final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+
+        ContentHash(Appendable next) {
+            this.next = next;
+        }
+
+        @Override
+        public ContentHash append(CharSequence csq) throws IOException {
+            CharSequence s = csq == null ? "null" : csq;
+            update(s, 0, s.length());
+            if (next != null) next.append(s);
+            return this;
+        }
+
+        @Override
+        public ContentHash append(CharSequence csq, int start, int end) throws IOException {
+            CharSequence s = csq == null ? "null" : csq;
+            update(s, start, end);
+            if (next != null) next.append(s, start, end);
+            return this;
+        }
+
+        @Override
+        public ContentHash append(char c) throws IOException {
+            update(c);
+            if (next != null) next.append(c);
+            return this;
+        }
+
+        byte[] digest() {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            return digest.digest();
+        }
+
+        private void update(CharSequence s, int start, int end) {
+            for (int i = start; i < end; i++) update(s.charAt(i));
+        }
+
+        private void update(char c) {
+            if (buffer.remaining() < 2) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            buffer.putChar(c);
+        }
+    }
+
+    /**
+     * 로그를 뒤에서부터 한 레코드씩 읽어 과거 상태를 만들어 준다.
+     * 손상된 레코드를 만나면 그 이전 기록은 없는 것으로 취급한다.
+     */
+    public static final class Reader {
+        private final Path log;
+        private long end;
+        /** 가장 최근에 돌려준 상태. 처음 되돌릴 때까지는 문자열로 만들지 않는다. */
+        private CharSequence state;
+
+        Reader(Path log, long end, CharSequence state) {
+            this.log = log;
+            this.end = end;
+            this.state = state;
+        }
+
+        public boolean hasPrevious() {
+            return end > HEADER_SIZE;
+        }
+
+        /** 다음으로 오래된 상태. 더 없거나 읽을 수 없으면 null. */
+        public String previous() {
+            if (!hasPrevious()) return null;
+            try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "r")) {
+                if (raf.length() < end) throw new IOException("log truncated");
+                byte[] body = readRecordBefore(raf, end);
+                String previous = applyRecord(state.toString(), body);
+                state = previous;
+                end -= RECORD_OVERHEAD + body.length;
+                return previous;
+            } catch (IOException e) {
+                end = HEADER_SIZE;
+                return null;
+            }
+        }
+
+        /**
+         * 아직 읽지 않은 레코드를 그대로 복사한다. budget 을 넘으면 가장 오래된 레코드부터 건너뛴다.
+         * previous() 와 같은 검사를 하며 뒤에서부터 훑고, 손상된 레코드를 만나면 그보다 과거는 복사하지 않는다.
+         * @return 복사한 바이트 수
+         */
+        long copyUnreadTo(OutputStream out, long budget) throws IOException {
+            if (!hasPrevious() || budget <= 0) return 0;
+            try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "r")) {
+                if (raf.length() < end) return 0;
+                long from = end;
+                while (from > HEADER_SIZE) {
+                    long start;
+                    try {
+                        start = from - RECORD_OVERHEAD - readRecordBefore(raf, from).length;
+                    } catch (IOException e) {
+                        break;
+                    }
+                    if (end - start > budget) break;
+                    from = start;
+                }
+                if (from >= end) return 0;
+                raf.seek(from);
+                byte[] buf = new byte[(int) Math.min(FileService.CHUNK_SIZE, end - from)];
+                long remaining = end - from;
+                while (remaining > 0) {
+                    int n = raf.read(buf, 0, (int) Math.min(buf.length, remaining));
+                    if (n < 0) throw new IOException("log truncated");
+                    out.write(buf, 0, n);
+                    remaining -= n;
+                }
+                return end - from;
+            }
+        }
+
+        /** end 바로 앞에서 끝나는 레코드의 본문. 길이가 범위를 벗어나거나 CRC 가 맞지 않으면 IOException. */
+        private static byte[] readRecordBefore(RandomAccessFile raf, long end) throws IOException {
+            raf.seek(end - 4);
+            int len = raf.readInt();
+            long start = end - RECORD_OVERHEAD - len;
+            if (len < 0 || start < HEADER_SIZE) throw new IOException("bad record length");
+            raf.seek(start);
+            if (raf.readInt() != len) throw new IOException("record length mismatch");
+            byte[] body = new byte[len];
+            raf.readFully(body);
+            int crc = raf.readInt();
+            CRC32 check = new CRC32();
+            check.update(body);
+            if ((int) check.getValue() != crc) throw new IOException("checksum mismatch");
+            return body;
+        }
+    }
+}
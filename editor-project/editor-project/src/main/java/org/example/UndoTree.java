@@ -0,0 +1,315 @@
+package org.example;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * 가지를 버리지 않는 Undo 기록 (Undo 트리).
+ * - 노드는 전체 문자열이 아니라 부모와의 차이(델타)만 가지며, 공통 조상까지의 상태는 모든 가지가 공유한다
+ * - Undo 는 부모로, Redo 는 가장 최근에 머물렀던 자식으로 이동한다
+ * - 버전 번호나 시각("5분 전 상태")으로 임의 지점에 바로 이동할 수 있다
+ * - 메모리 예산을 넘으면 오래 방문하지 않은 가지의 끝 노드부터, 그다음 가장 오래된 루트부터 버린다
+ * - 정리 후보(끝 노드)는 마지막 방문 순, 전체 노드는 만든 시각 순으로 정렬해 두어
+ *   긴 세션에서도 편집 한 번, 시각 이동 한 번이 O(log n) 이다
+ */
+public class UndoTree {
+    /** 노드 하나의 고정 비용(객체 헤더, 필드, 맵/인덱스 항목)을 대략 잡은 값. */
+    static final int NODE_OVERHEAD_BYTES = 96;
+
+    private static final Comparator<Node> BY_LAST_VISIT =
+            Comparator.<Node>comparingLong(n -> n.lastVisit).thenComparingInt(n -> n.version);
+    private static final Comparator<Node> BY_CREATION =
+            Comparator.<Node>comparingLong(n -> n.createdAt).thenComparingInt(n -> n.version);
+
+    private final Document document;
+    private final Clock clock;
+    private final long memoryBudgetBytes;
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    /** 버릴 수 있는 끝 노드 (자식이 없고 루트가 아닌 노드), 가장 오래 방문하지 않은 것이 먼저. */
+    private final NavigableSet<Node> prunableLeaves = new TreeSet<>(BY_LAST_VISIT);
+    private final NavigableSet<Node> byCreation = new TreeSet<>(BY_CREATION);
+
+    private Node root;
+    private Node current;
+    private int nextVersion;
+    private long visitTick;
+    private long memoryUsage;
+    private boolean rootDropped;
+
+    public UndoTree(Document document, Clock clock, long memoryBudgetBytes) {
+        this.document = Objects.requireNonNull(document);
+        this.clock = Objects.requireNonNull(clock);
+        this.memoryBudgetBytes = Math.max(NODE_OVERHEAD_BYTES, memoryBudgetBytes);
+        reset();
+    }
+
+    Document document() {
+        return document;
+    }
+
+    /** 기록을 모두 지우고 현재 문서 내용을 새 루트로 삼는다. */
+    public void reset() {
+        nodes.clear();
+        prunableLeaves.clear();
+        byCreation.clear();
+        memoryUsage = 0;
+        rootDropped = false;
+        root = newNode(null, null, null);
+        current = root;
+    }
+
+    /** 현재 상태에서 newText 로 바뀐 것을 새 자식 노드로 기록하고 문서에 반영한다. */
+    public void commit(String newText) {
+        String text = document.getText();
+        if (text.equals(newText)) return;
+        TextDelta forward = TextDelta.between(text, newText);
+        Node child = newNode(current, forward, forward.inverse(text));
+        current.children.add(child);
+        reindexLeaf(current);
+        document.setText(newText);
+        visit(child);
+        prune();
+    }
+
+    public boolean canUndo() {
+        return current.parent != null;
+    }
+
+    public boolean canRedo() {
+        return !current.children.isEmpty();
+    }
+
+    public boolean undo() {
+        if (current.parent == null) return false;
+        document.setText(current.backward.apply(document.getText()));
+        visit(current.parent);
+        return true;
+    }
+
+    /** 가장 최근에 머물렀던 자식 가지로 다시 진행한다. */
+    public boolean redo() {
+        Node next = null;
+        for (Node child : current.children) {
+            if (next == null || child.lastVisit > next.lastVisit) next = child;
+        }
+        if (next == null) return false;
+        document.setText(next.forward.apply(document.getText()));
+        visit(next);
+        return true;
+    }
+
+    public int currentVersion() {
+        return current.version;
+    }
+
+    /** 아직 남아 있는 버전 번호들 (오름차순). */
+    public List<Integer> versions() {
+        List<Integer> out = new ArrayList<>(nodes.keySet());
+        out.sort(null);
+        return out;
+    }
+
+    public Instant createdAt(int version) {
+        Node node = nodes.get(version);
+        return node == null ? null : Instant.ofEpochMilli(node.createdAt);
+    }
+
+    /** 지정한 버전으로 이동한다. 이미 정리된 버전이면 false. */
+    public boolean jumpTo(int version) {
+        Node target = nodes.get(version);
+        if (target == null) return false;
+        moveTo(target);
+        return true;
+    }
+
+    /**
+     * 주어진 시각에 가장 최근이었던 상태로 이동한다 (그 시각 이전에 만들어진 노드 중 가장 늦은 것).
+     * 그보다 오래된 기록이 정리되었으면 남아 있는 가장 오래된 상태로 간다.
+     */
+    public int jumpToTime(Instant when) {
+        Node probe = new Node(Integer.MAX_VALUE, null, null, null, when.toEpochMilli());
+        Node best = byCreation.floor(probe);
+        if (best == null || BY_CREATION.compare(best, root) < 0) best = root;
+        moveTo(best);
+        return best.version;
+    }
+
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /** 예산 때문에 루트가 정리된 적이 있으면 true (디스크 기록과 더 이상 이어지지 않음). */
+    boolean hasDroppedRoot() {
+        return rootDropped;
+    }
+
+    /** 현재 루트보다 더 과거 상태를 새 루트로 붙인다 (디스크에서 지연 로딩한 기록). */
+    void prependRoot(String olderText) {
+        String rootText = rootText();
+        TextDelta forward = TextDelta.between(olderText, rootText);
+        Node oldRoot = root;
+        Node newRoot = newNode(null, null, null);
+        newRoot.depth = oldRoot.depth - 1;
+        byCreation.remove(newRoot);
+        newRoot.createdAt = oldRoot.createdAt - 1; // 정확한 시각은 모르지만 기존 루트보다는 과거다
+        byCreation.add(newRoot);
+        oldRoot.parent = newRoot;
+        oldRoot.forward = forward;
+        oldRoot.backward = forward.inverse(olderText);
+        memoryUsage += deltaBytes(oldRoot);
+        newRoot.children.add(oldRoot);
+        reindexLeaf(oldRoot);
+        root = newRoot;
+        prune();
+    }
+
+    /** 현재 → 루트 방향으로 한 단계씩 되돌리는 델타 목록 (디스크 저장용). */
+    List<TextDelta> pathToRoot() {
+        List<TextDelta> out = new ArrayList<>();
+        for (Node n = current; n.parent != null; n = n.parent) out.add(n.backward);
+        return out;
+    }
+
+    String rootText() {
+        String text = document.getText();
+        for (Node n = current; n.parent != null; n = n.parent) text = n.backward.apply(text);
+        return text;
+    }
+
+    private void moveTo(Node target) {
+        if (target == current) {
+            visit(target);
+            return;
+        }
+        // 공통 조상까지 올라갔다가 target 까지 내려간다
+        List<Node> down = new ArrayList<>();
+        Node up = current;
+        Node t = target;
+        while (up.depth > t.depth) up = up.parent;
+        while (t.depth > up.depth) {
+            down.add(t);
+            t = t.parent;
+        }
+        while (up != t) {
+            up = up.parent;
+            down.add(t);
+            t = t.parent;
+        }
+        Node ancestor = up;
+        String text = document.getText();
+        for (Node n = current; n != ancestor; n = n.parent) text = n.backward.apply(text);
+        for (int i = down.size() - 1; i >= 0; i--) text = down.get(i).forward.apply(text);
+        document.setText(text);
+        for (int i = down.size() - 1; i >= 0; i--) visit(down.get(i));
+        visit(target);
+    }
+
+    private Node newNode(Node parent, TextDelta forward, TextDelta backward) {
+        Node node = new Node(nextVersion++, parent, forward, backward, clock.millis());
+        nodes.put(node.version, node);
+        byCreation.add(node);
+        if (parent != null) prunableLeaves.add(node);
+        memoryUsage += NODE_OVERHEAD_BYTES + deltaBytes(node);
+        return node;
+    }
+
+    private void visit(Node node) {
+        current = node;
+        // 정렬 기준이 바뀌므로 빼고 다시 넣는다
+        boolean prunable = prunableLeaves.remove(node);
+        node.lastVisit = ++visitTick;
+        if (prunable) prunableLeaves.add(node);
+    }
+
+    private void prune() {
+        while (memoryUsage > memoryBudgetBytes) {
+            Node victim = coldestPrunableLeaf();
+            if (victim != null) {
+                remove(victim);
+                victim.parent.children.remove(victim);
+                reindexLeaf(victim.parent);
+            } else if (!dropRoot()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 현재 노드와 그 조상을 제외한 끝 노드 중 가장 오래 방문하지 않은 것.
+     * 조상은 끝 노드가 아니고, 현재 노드는 방금 방문해 맨 뒤에 있으므로 앞에서 하나만 건너뛰면 된다.
+     */
+    private Node coldestPrunableLeaf() {
+        for (Node node : prunableLeaves) {
+            if (node != current) return node;
+        }
+        return null;
+    }
+
+    /** 자식 수나 부모가 바뀐 노드를 정리 후보 인덱스에 맞게 넣거나 뺀다. */
+    private void reindexLeaf(Node node) {
+        if (node.children.isEmpty() && node.parent != null && nodes.get(node.version) == node) {
+            prunableLeaves.add(node);
+        } else {
+            prunableLeaves.remove(node);
+        }
+    }
+
+    /** 남은 것이 루트 → 현재 경로뿐이면 가장 오래된 루트를 버린다. */
+    private boolean dropRoot() {
+        if (root == current || root.children.size() != 1) return false;
+        Node next = root.children.get(0);
+        remove(root);
+        memoryUsage -= deltaBytes(next);
+        next.parent = null;
+        next.forward = null;
+        next.backward = null;
+        reindexLeaf(next);
+        root = next;
+        rootDropped = true;
+        return true;
+    }
+
+    private void remove(Node node) {
+        nodes.remove(node.version);
+        prunableLeaves.remove(node);
+        byCreation.remove(node);
+        memoryUsage -= NODE_OVERHEAD_BYTES + deltaBytes(node);
+    }
+
+    private static long deltaBytes(Node node) {
+        if (node.forward == null) return 0;
+        return 2L * (node.forward.replacement().length() + node.backward.replacement().length());
+    }
+
+    private static final class Node {
+        final int version;
+        final List<Node> children = new ArrayList<>(1);
+        int depth;
+        Node parent;
+        TextDelta forward;
+        TextDelta backward;
+        long createdAt;
+        long lastVisit;
+
+        Node(int version, Node parent, TextDelta forward, TextDelta backward, long createdAt) {
+            this.version = version;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.parent = parent;
+            this.forward = forward;
+            this.backward = backward;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -2,6 +2,12 @@ package org.example;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DocumentHistoryTest {
@@ -76,4 +82,39 @@ class DocumentHistoryTest {
         history.undo(); // -> "1" 상태가 됨 (더 이상 undo 불가)
         assertFalse(history.canUndo());
     }
+
+    @Test
+    void treeModeKeepsRedoneAwayBranch() {
+        // 의도: 트리 모드에서는 Undo 후 새 편집을 해도 이전 가지로 돌아갈 수 있어야 한다.
+        UndoTree tree = new UndoTree(document, java.time.Clock.systemUTC(), 1 << 20);
+        history = new DocumentHistory(tree);
+
+        history.executeAdd("Hello");
+        history.executeAdd(" World");
+        int world = tree.currentVersion();
+        history.undo();
+        history.executeAdd(" There");
+        assertEquals("Hello There", document.getText());
+        assertTrue(history.canUndo());
+
+        assertTrue(tree.jumpTo(world));
+        assertEquals("Hello World", document.getText());
+    }
+
+    @Test
+    void persistedHistoryEndsWhenTreeBudgetCannotHoldLoadedRoot(@TempDir Path tmp) throws IOException {
+        // 의도: 디스크에서 읽은 과거 상태가 예산 때문에 바로 버려지면 더 되돌릴 수 없다고 알려야 한다.
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+        store.save(file, "current", List.of("x".repeat(500), "y".repeat(500)), null);
+        document.setText("current");
+        UndoTree tree = new UndoTree(document, java.time.Clock.systemUTC(), 2 * UndoTree.NODE_OVERHEAD_BYTES);
+        history = new DocumentHistory(tree);
+        history.restore(store.open(file, "current"));
+        assertTrue(history.canUndo());
+
+        history.undo();
+        assertEquals("current", document.getText());
+        assertFalse(history.canUndo(), "버려진 루트 너머의 기록을 계속 소모하지 않아야 합니다");
+    }
 }
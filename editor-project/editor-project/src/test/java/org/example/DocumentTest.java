@@ -2,6 +2,9 @@ package org.example;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DocumentTest {
@@ -61,4 +64,82 @@ class DocumentTest {
                 () -> document.removeText(0, 100), "범위를 벗어나면 IndexOutOfBoundsException을 던져야 합니다.");
     }
 
+    @Test
+    void snapshotIsNotAffectedByLaterEdits() {
+        // 의도: 스냅샷은 찍은 시점의 내용과 버전을 그대로 유지해야 한다.
+        document.addText("Hello");
+        DocumentSnapshot before = document.snapshot();
+
+        document.addText(" World");
+        document.removeText(0, 1);
+
+        assertEquals("Hello", before.toString());
+        assertEquals("ello World", document.getText());
+        assertTrue(document.version() > before.version());
+    }
+
+    @Test
+    void snapshotWorksAsCharSequenceAcrossManySmallAndLargeEdits() {
+        StringBuilder expected = new StringBuilder();
+        String big = "x".repeat(DocumentSnapshot.LEAF_MERGE_LIMIT + 1);
+        for (int i = 0; i < 2_000; i++) {
+            String piece = (i % 10 == 0) ? big : "w" + i + " ";
+            document.addText(piece);
+            expected.append(piece);
+            if (i % 7 == 0) {
+                document.removeText(i, i + 3);
+                expected.delete(i, i + 3);
+            }
+        }
+        DocumentSnapshot snap = document.snapshot();
+        assertEquals(expected.toString(), snap.toString());
+        assertEquals(expected.length(), snap.length());
+        assertEquals(expected.charAt(12_345), snap.charAt(12_345));
+        assertEquals(expected.substring(100, 900), snap.subSequence(100, 900).toString());
+        assertTrue(snap.depth() <= DocumentSnapshot.MAX_DEPTH);
+        assertTrue(Pattern.compile("w1999").matcher(snap).find());
+    }
+
+    @Test
+    void concurrentReaderAlwaysSeesConsistentSnapshot() throws Exception {
+        // 의도: 쓰는 쪽이 계속 편집해도 읽는 쪽은 잠금 없이 온전한 버전만 본다.
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = -1;
+            while (!Thread.currentThread().isInterrupted() && failure.get() == null) {
+                DocumentSnapshot s = document.snapshot();
+                String text = s.toString();
+                if (text.length() != s.length() || text.length() % 3 != 0 || s.version() < lastVersion) {
+                    failure.set("inconsistent snapshot v" + s.version() + " len " + text.length());
+                }
+                lastVersion = s.version();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            document.addText("abc");
+            if (i % 100 == 99) document.removeText(0, 30);
+        }
+        reader.interrupt();
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    void contentEqualsComparesAcrossDifferentLeafBoundaries() {
+        DocumentSnapshot.Builder chunks = new DocumentSnapshot.Builder();
+        String big = "y".repeat(DocumentSnapshot.LEAF_MERGE_LIMIT + 1);
+        chunks.append(big).append("abc").append(big);
+        Document a = new Document();
+        a.setContent(chunks);
+        Document b = new Document();
+        b.setText(big + "ab");
+        b.addText("c" + big);
+
+        assertTrue(a.snapshot().contentEquals(b.snapshot()));
+        b.removeText(big.length(), big.length() + 1);
+        b.addText("");
+        assertFalse(a.snapshot().contentEquals(b.snapshot()));
+        assertTrue(a.snapshot().depth() > 0, "비교하면서 잎을 합치지 않아야 합니다");
+    }
 }
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -61,5 +62,182 @@ class EditorControllerTest {
         c.saveAs(f2);
         assertEquals("again", Files.readString(f2));
     }
-}
 
+    @Test
+    void saveKeepsEncodingOfOpenedFile(@TempDir Path tmp) throws IOException {
+        Charset euckr = Charset.forName("EUC-KR");
+        Path f = tmp.resolve("legacy.txt");
+        Files.write(f, "기존 내용".getBytes(euckr));
+
+        Document doc = new Document();
+        EditorController c = new EditorController(doc, new DocumentHistory(doc), new FileService());
+
+        c.open(f);
+        assertEquals("기존 내용", c.getText());
+
+        c.applyUserEdit("수정한 내용");
+        c.save();
+        assertEquals("수정한 내용", new String(Files.readAllBytes(f), euckr));
+
+        c.newDocument();
+        assertEquals(TextEncoding.UTF_8, c.getCurrentEncoding());
+    }
+
+    @Test
+    void gzipFileStaysCompressedOnSave(@TempDir Path tmp) throws IOException {
+        FileService fs = new FileService();
+        Path f = tmp.resolve("app.log.gz");
+        fs.save(f, "old", TextEncoding.UTF_8, Compression.GZIP);
+
+        Document doc = new Document();
+        EditorController c = new EditorController(doc, new DocumentHistory(doc), fs);
+        c.open(f);
+        assertEquals("old", c.getText());
+        assertEquals(Compression.GZIP, c.getCurrentCompression());
+
+        c.applyUserEdit("new");
+        c.save();
+        assertEquals(Compression.GZIP, fs.detectCompression(f));
+        assertEquals("new", fs.load(f));
+
+        Path plain = tmp.resolve("copy.txt");
+        c.saveAs(plain);
+        assertEquals("new", Files.readString(plain));
+        assertEquals(Compression.NONE, c.getCurrentCompression());
+    }
+
+    @Test
+    void largeFileIsLoadedAsRopeChunksWithoutJoiningThem(@TempDir Path tmp) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < FileService.CHUNK_SIZE * 4) sb.append("가나다 abc\n");
+        String content = sb.toString();
+        FileService fs = new FileService();
+        Path f = tmp.resolve("big.txt.gz");
+        fs.save(f, content, TextEncoding.UTF_8, Compression.GZIP);
+
+        Document doc = new Document();
+        EditorController c = new EditorController(doc, new DocumentHistory(doc), fs);
+        c.open(f);
+        assertEquals(Compression.GZIP, c.getCurrentCompression());
+        assertFalse(c.isDirty());
+        DocumentSnapshot loaded = doc.snapshot();
+        assertEquals(content.length(), loaded.length());
+        assertTrue(loaded.depth() > 0, "청크들이 잎으로 남아 있어야 합니다");
+        assertEquals(content.charAt(FileService.CHUNK_SIZE * 3 + 1), loaded.charAt(FileService.CHUNK_SIZE * 3 + 1));
+
+        assertEquals(content, c.getText());
+        assertEquals(0, loaded.depth(), "문자열을 만든 뒤에는 잎 하나로 바뀌어야 합니다");
+    }
+
+    @Test
+    void openDirtyCheckAndSaveKeepTheRopeWithAnUndoStore(@TempDir Path tmp) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < FileService.CHUNK_SIZE * 4) sb.append("가나다 abc\n");
+        String content = sb.toString();
+        FileService fs = new FileService();
+        Path f = tmp.resolve("big.txt");
+        fs.save(f, content);
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+
+        Document doc = new Document();
+        EditorController c = new EditorController(doc, new DocumentHistory(doc), fs, store);
+        c.open(f);
+        DocumentSnapshot loaded = doc.snapshot();
+        assertFalse(c.isDirty());
+        c.save();
+        assertEquals(content, Files.readString(f));
+        assertTrue(loaded.depth() > 0, "열기/비교/저장 중에 잎을 하나의 문자열로 합치지 않아야 합니다");
+
+        c.applyUserEdit("짧은 내용");
+        c.save();
+        Document reopened = new Document();
+        EditorController again = new EditorController(reopened, new DocumentHistory(reopened), fs, store);
+        again.open(f);
+        assertTrue(again.canUndo(), "청크로 계산한 해시가 저장할 때의 해시와 같아야 합니다");
+        again.undo();
+        assertEquals(content, again.getText());
+    }
+
+    @Test
+    void undoHistorySurvivesReopenWhenStoreIsGiven(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("a.txt");
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        FileService fs = new FileService();
+
+        Document doc = new Document();
+        EditorController first = new EditorController(doc, new DocumentHistory(doc), fs, store);
+        first.applyUserEdit("one");
+        first.applyUserEdit("one two");
+        first.saveAs(f);
+
+        Document doc2 = new Document();
+        EditorController second = new EditorController(doc2, new DocumentHistory(doc2), fs, store);
+        second.open(f);
+        assertTrue(second.canUndo());
+        second.applyUserEdit("one two three");
+        second.save();
+
+        Document doc3 = new Document();
+        EditorController third = new EditorController(doc3, new DocumentHistory(doc3), fs, store);
+        third.open(f);
+        third.undo();
+        assertEquals("one two", third.getText());
+        third.undo();
+        assertEquals("one", third.getText());
+        third.undo();
+        assertEquals("", third.getText());
+        assertFalse(third.canUndo());
+        third.redo();
+        assertEquals("one", third.getText());
+    }
+
+    @Test
+    void openingAnotherFileCanBeUndoneWhenStoreIsGiven(@TempDir Path tmp) throws IOException {
+        Path other = tmp.resolve("other.txt");
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        FileService fs = new FileService();
+
+        Document saved = new Document();
+        EditorController writer = new EditorController(saved, new DocumentHistory(saved), fs, store);
+        writer.applyUserEdit("old");
+        writer.applyUserEdit("other");
+        writer.saveAs(other);
+
+        Document doc = new Document();
+        EditorController c = new EditorController(doc, new DocumentHistory(doc), fs, store);
+        c.applyUserEdit("draft");
+        c.open(other);
+        assertEquals("other", c.getText());
+        c.undo();
+        assertEquals("draft", c.getText(), "다른 파일을 열어도 메모리 기록이 지워지지 않아야 합니다");
+    }
+
+    @Test
+    void treeModeHistoryIsPersistedAlongCurrentBranch(@TempDir Path tmp) throws IOException {
+        Path f = tmp.resolve("a.txt");
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        FileService fs = new FileService();
+
+        Document doc = new Document();
+        DocumentHistory hist = new DocumentHistory(new UndoTree(doc, java.time.Clock.systemUTC(), 1 << 20));
+        EditorController c = new EditorController(doc, hist, fs, store);
+        c.applyUserEdit("one");
+        c.applyUserEdit("one two");
+        c.undo();
+        c.applyUserEdit("one three");
+        c.saveAs(f);
+
+        Document doc2 = new Document();
+        DocumentHistory hist2 = new DocumentHistory(new UndoTree(doc2, java.time.Clock.systemUTC(), 1 << 20));
+        EditorController reopened = new EditorController(doc2, hist2, fs, store);
+        reopened.open(f);
+        reopened.undo();
+        assertEquals("one", reopened.getText());
+        reopened.undo();
+        assertEquals("", reopened.getText());
+        assertFalse(reopened.canUndo());
+        reopened.redo();
+        reopened.redo();
+        assertEquals("one three", reopened.getText());
+    }
+}
@@ -5,8 +5,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -58,5 +68,152 @@ class FileServiceTest {
         assertThrows(IllegalArgumentException.class, () -> fileService.save(null, "x"));
         assertThrows(IllegalArgumentException.class, () -> fileService.load(null));
     }
-}
 
+    @Test
+    void detectsLegacyKoreanEncodingAndPreservesItOnSave() throws IOException {
+        Charset euckr = Charset.forName("EUC-KR");
+        String content = "안녕하세요 레거시 파일";
+        Path file = tempDir.resolve("legacy.txt");
+        Files.write(file, content.getBytes(euckr));
+
+        StringBuilder loaded = new StringBuilder();
+        TextEncoding encoding = fileService.load(file, loaded);
+        assertEquals(content, loaded.toString());
+        assertEquals(TextEncoding.CP949, encoding.charset());
+
+        fileService.save(file, content + "!", encoding);
+        assertArrayEquals((content + "!").getBytes(euckr), Files.readAllBytes(file));
+    }
+
+    @Test
+    void bomIsStrippedOnLoadAndWrittenBackOnSave() throws IOException {
+        Path file = tempDir.resolve("bom.txt");
+        byte[] body = "BOM 있음".getBytes(StandardCharsets.UTF_16LE);
+        byte[] bytes = new byte[body.length + 2];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xFE;
+        System.arraycopy(body, 0, bytes, 2, body.length);
+        Files.write(file, bytes);
+
+        StringBuilder loaded = new StringBuilder();
+        TextEncoding encoding = fileService.load(file, loaded);
+        assertEquals("BOM 있음", loaded.toString());
+        assertEquals(new TextEncoding(StandardCharsets.UTF_16LE, true), encoding);
+
+        fileService.save(file, loaded.toString(), encoding);
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    @Test
+    void detectsUtf16WithoutBomAndLatin1Fallback() throws IOException {
+        Path utf16 = tempDir.resolve("utf16.txt");
+        Files.write(utf16, "plain ascii in utf-16".getBytes(StandardCharsets.UTF_16BE));
+        assertEquals(StandardCharsets.UTF_16BE, fileService.detectEncoding(utf16).charset());
+        assertEquals("plain ascii in utf-16", fileService.load(utf16));
+
+        Path latin1 = tempDir.resolve("latin1.txt");
+        Files.write(latin1, new byte[]{'c', 'a', 'f', (byte) 0xE9, (byte) 0xFF});
+        assertEquals(StandardCharsets.ISO_8859_1, fileService.detectEncoding(latin1).charset());
+    }
+
+    @Test
+    void largeFileIsDecodedAcrossChunkBoundaries() throws IOException {
+        // 3바이트 UTF-8 문자가 청크 경계에 걸치도록 충분히 길게 만든다
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < FileService.CHUNK_SIZE * 3) sb.append("가나다 abc ");
+        Path file = tempDir.resolve("big.txt");
+        fileService.save(file, sb.toString());
+
+        assertEquals(sb.toString(), fileService.load(file));
+    }
+
+    @Test
+    void unmappableCharacterFailsInsteadOfSilentlyReplacing() {
+        Path file = tempDir.resolve("latin1-out.txt");
+        TextEncoding latin1 = new TextEncoding(StandardCharsets.ISO_8859_1, false);
+        assertThrows(CharacterCodingException.class, () -> fileService.save(file, "한글", latin1));
+    }
+
+    @Test
+    void failedSaveLeavesExistingFileUntouched() throws IOException {
+        Path file = tempDir.resolve("legacy.txt");
+        byte[] original = "기존 내용".getBytes(Charset.forName("EUC-KR"));
+        Files.write(file, original);
+        TextEncoding cp949 = fileService.detectEncoding(file);
+
+        assertThrows(CharacterCodingException.class, () -> fileService.save(file, "이모지 \uD83D\uDE00", cp949));
+        assertArrayEquals(original, Files.readAllBytes(file), "인코딩에 실패해도 원래 바이트가 남아야 합니다");
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count(), "임시 파일이 남지 않아야 합니다");
+        }
+    }
+
+    @Test
+    void saveKeepsPermissionsAndWritesThroughSymlinks() throws IOException {
+        Path file = tempDir.resolve("script.sh");
+        fileService.save(file, "echo 1");
+        if (Files.getFileAttributeView(file, PosixFileAttributeView.class) == null) return;
+        Set<PosixFilePermission> executable = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(file, executable);
+        Path link = Files.createSymbolicLink(tempDir.resolve("link.sh"), file.getFileName());
+
+        fileService.save(link, "echo 2");
+
+        assertTrue(Files.isSymbolicLink(link), "링크가 일반 파일로 바뀌면 안 됩니다");
+        assertEquals("echo 2", fileService.load(file));
+        assertEquals(executable, Files.getPosixFilePermissions(file));
+
+        // 새 파일은 임시 파일의 600 이 아니라 평소 새 파일과 같은 권한으로 생긴다
+        Path fresh = tempDir.resolve("fresh.txt");
+        fileService.save(fresh, "x");
+        Path reference = Files.createFile(tempDir.resolve("reference.txt"));
+        assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(fresh));
+    }
+
+    @Test
+    void gzipFileIsDetectedByMagicAndDecompressedWhileLoading() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < FileService.CHUNK_SIZE * 2; i++) sb.append("line ").append(i).append(" 로그\n");
+        Path file = tempDir.resolve("app.log.1");
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(file))) {
+            os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(Compression.GZIP, fileService.detectCompression(file));
+        assertEquals(TextEncoding.UTF_8, fileService.detectEncoding(file));
+        assertEquals(sb.toString(), fileService.load(file));
+    }
+
+    @Test
+    void compressedSaveRoundTrip() throws IOException {
+        Path file = tempDir.resolve("out.txt.gz");
+        fileService.save(file, "압축 저장", TextEncoding.UTF_8, Compression.GZIP);
+
+        try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEquals("압축 저장", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("압축 저장", fileService.load(file));
+    }
+
+    @Test
+    void plainFileNamedGzIsNotDecompressed() throws IOException {
+        Path file = tempDir.resolve("not-really.gz");
+        Files.writeString(file, "plain");
+        assertEquals(Compression.NONE, fileService.detectCompression(file));
+        assertEquals("plain", fileService.load(file));
+    }
+
+    @Test
+    void snapshotIsSavedLeafByLeafEvenWhenALeafSplitsASurrogatePair() throws IOException {
+        DocumentSnapshot.Builder content = new DocumentSnapshot.Builder();
+        content.append("앞 \uD83D").append("\uDE00 뒤");
+        Document document = new Document();
+        document.setContent(content);
+        DocumentSnapshot snapshot = document.snapshot();
+
+        Path file = tempDir.resolve("rope.txt");
+        fileService.save(file, snapshot, TextEncoding.UTF_8, Compression.NONE);
+        assertEquals("앞 \uD83D\uDE00 뒤", Files.readString(file));
+        assertTrue(snapshot.depth() > 0, "저장하면서 잎을 합치지 않아야 합니다");
+    }
+}
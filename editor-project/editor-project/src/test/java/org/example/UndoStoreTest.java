@@ -0,0 +1,123 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoStoreTest {
+
+    @Test
+    void statesAreReadBackLazilyNewestFirst(@TempDir Path tmp) throws IOException {
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+
+        store.save(file, "abc😀 end", List.of("abc😀", "ab", ""), null);
+
+        UndoStore.Reader reader = store.open(file, "abc😀 end");
+        assertNotNull(reader);
+        assertEquals("abc😀", reader.previous());
+        assertEquals("ab", reader.previous());
+        assertEquals("", reader.previous());
+        assertFalse(reader.hasPrevious());
+        assertNull(reader.previous());
+    }
+
+    @Test
+    void historyIsDiscardedWhenFileContentChanged(@TempDir Path tmp) throws IOException {
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+        store.save(file, "saved", List.of("old"), null);
+
+        assertNull(store.open(file, "edited elsewhere"));
+        assertFalse(Files.exists(store.logPath(file)));
+    }
+
+    @Test
+    void unreadTailIsCarriedIntoNextSave(@TempDir Path tmp) throws IOException {
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+        store.save(file, "v3", List.of("v2", "v1"), null);
+
+        // 두 번째 세션: 과거 기록은 읽지 않은 채 새 편집만 추가
+        UndoStore.Reader tail = store.open(file, "v3");
+        store.save(file, "v4", List.of("v3"), tail);
+
+        UndoStore.Reader reader = store.open(file, "v4");
+        assertEquals("v3", reader.previous());
+        assertEquals("v2", reader.previous());
+        assertEquals("v1", reader.previous());
+        assertNull(reader.previous());
+    }
+
+    @Test
+    void corruptedRecordEndsHistoryInsteadOfFailing(@TempDir Path tmp) throws IOException {
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+        store.save(file, "new text", List.of("old text"), null);
+
+        Path log = store.logPath(file);
+        try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "rw")) {
+            raf.seek(UndoStore.HEADER_SIZE + 6);
+            raf.write(0x7F);
+        }
+        UndoStore.Reader reader = store.open(file, "new text");
+        assertNull(reader.previous());
+        assertFalse(reader.hasPrevious());
+    }
+
+    @Test
+    void carriedTailStopsAtCorruptRecord(@TempDir Path tmp) throws IOException {
+        UndoStore store = new UndoStore(tmp.resolve("undo"), 1 << 20);
+        Path file = tmp.resolve("a.txt");
+        store.save(file, "v3", List.of("v2", "v1"), null);
+
+        // 가장 오래된 레코드(v2 → v1)의 길이와 본문을 망가뜨린다
+        Path log = store.logPath(file);
+        try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "rw")) {
+            raf.seek(UndoStore.HEADER_SIZE);
+            raf.writeInt(Integer.MAX_VALUE);
+            raf.write(0x7F);
+        }
+        UndoStore.Reader tail = store.open(file, "v3");
+        store.save(file, "v4", List.of("v3"), tail);
+
+        long expected = UndoStore.HEADER_SIZE
+                + UndoStore.encodeRecord(TextDelta.between("v3", "v2")).length
+                + UndoStore.encodeRecord(TextDelta.between("v4", "v3")).length;
+        assertEquals(expected, Files.size(log), "손상된 레코드보다 과거는 옮겨지지 않아야 합니다");
+        UndoStore.Reader reader = store.open(file, "v4");
+        assertEquals("v3", reader.previous());
+        assertEquals("v2", reader.previous());
+        assertNull(reader.previous());
+    }
+
+    @Test
+    void diskBudgetDropsOldestRecordsAndLeastRecentLogs(@TempDir Path tmp) throws IOException {
+        long budget = 400;
+        UndoStore store = new UndoStore(tmp.resolve("undo"), budget);
+        Path a = tmp.resolve("a.txt");
+        Path b = tmp.resolve("b.txt");
+
+        // 델타가 작아지지 않도록 상태마다 내용을 완전히 다르게 만든다 (레코드당 약 160바이트)
+        String s2 = "x".repeat(150);
+        String s1 = "y".repeat(150);
+        String s0 = "z".repeat(150);
+        store.save(a, "a3", List.of(s2, s1, s0), null);
+        assertTrue(Files.size(store.logPath(a)) <= budget);
+        UndoStore.Reader reader = store.open(a, "a3");
+        assertEquals(s2, reader.previous());
+        assertEquals(s1, reader.previous());
+        assertNull(reader.previous(), "예산을 넘는 오래된 기록은 버려져야 합니다");
+
+        store.save(b, "b1", List.of(s0), null);
+        assertTrue(Files.exists(store.logPath(b)));
+        assertFalse(Files.exists(store.logPath(a)), "오래된 파일의 기록부터 정리되어야 합니다");
+    }
+}
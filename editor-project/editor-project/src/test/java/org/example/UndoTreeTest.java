@@ -0,0 +1,125 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoTreeTest {
+
+    /** 테스트에서 시간을 직접 흘려보내기 위한 시계. */
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.parse("2023-01-01T00:00:00Z");
+
+        void advance(Duration d) { now = now.plus(d); }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private Document document;
+    private ManualClock clock;
+    private UndoTree tree;
+
+    @BeforeEach
+    void setUp() {
+        document = new Document();
+        clock = new ManualClock();
+        tree = new UndoTree(document, clock, 1 << 20);
+    }
+
+    @Test
+    void newEditAfterUndoKeepsOldBranch() {
+        // 의도: Undo 후 새로 편집해도 되돌린 가지를 잃지 않아야 한다.
+        tree.commit("a");
+        tree.commit("ab");
+        int abVersion = tree.currentVersion();
+        tree.undo();
+        tree.commit("ac");
+        assertEquals("ac", document.getText());
+
+        assertTrue(tree.jumpTo(abVersion));
+        assertEquals("ab", document.getText());
+
+        tree.undo();
+        tree.redo(); // 가장 최근에 머물렀던 가지("ab")로 진행
+        assertEquals("ab", document.getText());
+    }
+
+    @Test
+    void jumpToTimeRestoresStateAtThatMoment() {
+        tree.commit("first");
+        clock.advance(Duration.ofMinutes(10));
+        tree.commit("second");
+        clock.advance(Duration.ofMinutes(10));
+        tree.commit("third");
+
+        tree.jumpToTime(clock.instant().minus(Duration.ofMinutes(5)));
+        assertEquals("second", document.getText());
+
+        tree.jumpToTime(clock.instant().minus(Duration.ofHours(1)));
+        assertEquals("", document.getText());
+
+        tree.jumpToTime(clock.instant());
+        assertEquals("third", document.getText());
+    }
+
+    @Test
+    void nodesStoreDeltasNotFullCopies() {
+        String big = "x".repeat(100_000);
+        tree.commit(big);
+        long afterBig = tree.memoryUsage();
+        for (int i = 0; i < 100; i++) tree.commit(document.getText() + i);
+        assertTrue(tree.memoryUsage() - afterBig < 100 * (UndoTree.NODE_OVERHEAD_BYTES + 16),
+                "작은 편집은 문서 크기와 무관하게 작은 비용만 들어야 합니다");
+    }
+
+    @Test
+    void budgetPrunesColdBranchesBeforeCurrentPath() {
+        tree = new UndoTree(document, clock, 10 * UndoTree.NODE_OVERHEAD_BYTES);
+        tree.commit("base");
+        tree.commit("base cold");
+        int cold = tree.currentVersion();
+        tree.undo();
+        for (int i = 0; i < 9; i++) tree.commit(document.getText() + i);
+
+        assertTrue(tree.memoryUsage() <= 10 * UndoTree.NODE_OVERHEAD_BYTES);
+        assertFalse(tree.versions().contains(cold), "방문하지 않은 가지가 먼저 정리되어야 합니다");
+
+        for (int i = 0; i < 20; i++) tree.commit(document.getText() + i);
+        assertTrue(tree.memoryUsage() <= 10 * UndoTree.NODE_OVERHEAD_BYTES);
+        assertTrue(tree.hasDroppedRoot());
+        String text = document.getText();
+        while (tree.undo()) { }
+        while (tree.redo()) { }
+        assertEquals(text, document.getText());
+    }
+
+    @Test
+    void longBranchySessionKeepsPruningAndTimeJumpsConsistent() {
+        tree = new UndoTree(document, clock, 200 * UndoTree.NODE_OVERHEAD_BYTES);
+        for (int i = 0; i < 5_000; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            if (i % 7 == 3) tree.undo();
+            tree.commit(document.getText().length() > 40 ? "r" + i : document.getText() + i);
+            assertTrue(tree.memoryUsage() <= 200 * UndoTree.NODE_OVERHEAD_BYTES);
+        }
+        // 인덱스로 찾은 결과가 남은 노드 전체를 훑은 결과와 같아야 한다
+        Instant start = tree.createdAt(tree.versions().get(0));
+        for (int s = 0; s < 300; s += 7) {
+            Instant when = start.plusSeconds(s);
+            int expected = tree.versions().get(0);
+            for (int v : tree.versions()) {
+                if (!tree.createdAt(v).isAfter(when) && !tree.createdAt(v).isBefore(tree.createdAt(expected))) expected = v;
+            }
+            assertEquals(expected, tree.jumpToTime(when));
+        }
+    }
+}